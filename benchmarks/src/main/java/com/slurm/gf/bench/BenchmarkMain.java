@@ -0,0 +1,80 @@
+// BenchmarkMain.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf.bench;
+import java.io.IOException;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * Runs the benchmarks, taking the usual JMH command line options.
+ * Unless told otherwise it adds the GC profiler, so that every result
+ * comes with its allocation rate, and writes the results as JSON to
+ * jmh-result.json, for comparison with earlier runs.
+ *
+ * @author Richard Blaylock
+ */
+public class BenchmarkMain {
+
+  public static final String RESULT_FILE = "jmh-result.json";
+
+  public static void main(String[] args) throws RunnerException, IOException {
+    CommandLineOptions cl;
+    try {
+      cl = new CommandLineOptions(args);
+    }
+    catch (CommandLineOptionException cloe) {
+      System.err.println(cloe.getMessage());
+      System.exit(1);
+      return;
+    }
+    if (cl.shouldHelp()) {
+      cl.showHelp();
+      return;
+    }
+    if (cl.shouldList() || cl.shouldListWithParams() || cl.shouldListProfilers()
+        || cl.shouldListResultFormats()) {
+      new Runner(cl).list();
+      return;
+    }
+
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(cl);
+    if (cl.getProfilers().isEmpty()) {
+      options.addProfiler(GCProfiler.class);
+    }
+    if (!cl.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!cl.getResult().hasValue()) {
+      options.result(RESULT_FILE);
+    }
+    new Runner(options.build()).run();
+  }
+
+}
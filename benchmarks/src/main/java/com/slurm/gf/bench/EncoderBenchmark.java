@@ -0,0 +1,116 @@
+// EncoderBenchmark.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf.bench;
+import com.slurm.gf.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Times turning every character of a font, already decoded, into GIF
+ * bytes: with GIFEncoder, as GF2GIFs does now, and with the
+ * ImageIO GIF writer it used to use, for comparison.  Nothing is
+ * written to disk.
+ *
+ * @author Richard Blaylock
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncoderBenchmark {
+
+  @Param({"io.2602gf", "bcmr17.118gf", "synthetic-256-400x500"})
+  String font;
+
+  GlyphBitmap[] glyphs;
+  BufferedImage[] images;
+  GIFEncoder encoder;
+  ByteArrayOutputStream bytes;
+
+  @Setup
+  public void setup() throws Exception {
+    GFFont f = new GFFont(Fonts.find(font).getPath());
+    GFMetrics metrics = f.getMetrics();
+    List<GlyphBitmap> list = new ArrayList<GlyphBitmap>();
+    for (int i = 0; i < metrics.getCharLocCount(); i++) {
+      GFGlyph g = f.glyph(metrics.getCharacterResidue(i));
+      if (g != null) list.add(g.getBitmap());
+    }
+    f.close();
+    glyphs = list.toArray(new GlyphBitmap[list.size()]);
+
+    IndexColorModel colorModel = new IndexColorModel(1, 2,
+        new byte[] {-1, 0}, new byte[] {-1, 0}, new byte[] {-1, 0});
+    encoder = new GIFEncoder(colorModel);
+    images = new BufferedImage[glyphs.length];
+    for (int i = 0; i < glyphs.length; i++) {
+      images[i] = toImage(glyphs[i], colorModel);
+    }
+    bytes = new ByteArrayOutputStream();
+  }
+
+  static BufferedImage toImage(GlyphBitmap g, IndexColorModel colorModel) {
+    int w = Math.max(1, g.getWidth());
+    int h = Math.max(1, g.getHeight());
+    BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_BINARY, colorModel);
+    WritableRaster raster = image.getRaster();
+    for (int y = 0; y < g.getHeight(); y++) {
+      for (int x = 0; x < g.getWidth(); x++) {
+        if (g.get(x, y)) raster.setSample(x, y, 0, 1);
+      }
+    }
+    return image;
+  }
+
+  @Benchmark
+  public int gifEncoder() {
+    int total = 0;
+    for (int i = 0; i < glyphs.length; i++) {
+      encoder.encode(glyphs[i], 0, glyphs[i].getHeight());
+      total = total + encoder.size();
+    }
+    return total;
+  }
+
+  @Benchmark
+  public int imageIO() throws IOException {
+    int total = 0;
+    for (int i = 0; i < images.length; i++) {
+      bytes.reset();
+      ImageIO.write(images[i], "gif", bytes);
+      total = total + bytes.size();
+    }
+    return total;
+  }
+
+}
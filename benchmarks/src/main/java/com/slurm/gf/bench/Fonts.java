@@ -0,0 +1,85 @@
+// Fonts.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf.bench;
+import com.slurm.gf.GFGenerator;
+import java.io.*;
+
+/**
+ * Finds the font files named by the benchmarks' font parameters.
+ * A name of the form synthetic-count-widthxheight is written by
+ * GFGenerator to a temporary file, a path to an existing file is
+ * taken as it is, and any other name, such as io.2602gf, is looked
+ * for in the samples directory (the gf.samples property, or else
+ * samples or ../samples).
+ *
+ * @author Richard Blaylock
+ * @see GFGenerator
+ */
+class Fonts {
+
+  static final String SYNTHETIC = "synthetic-";
+
+  static File find(String name) throws IOException {
+    if (name.startsWith(SYNTHETIC)) {
+      String[] parts = name.substring(SYNTHETIC.length()).split("[-x]");
+      int count = Integer.parseInt(parts[0]);
+      int width = Integer.parseInt(parts[1]);
+      int height = Integer.parseInt(parts[2]);
+      return generate(count, width, height);
+    }
+    if (new File(name).isFile()) return new File(name);
+    String samples = System.getProperty("gf.samples");
+    String[] dirs = (samples != null) ? new String[] {samples}
+                                      : new String[] {"samples", "../samples"};
+    for (int i = 0; i < dirs.length; i++) {
+      File f = new File(dirs[i], name);
+      if (f.isFile()) return f;
+    }
+    throw new FileNotFoundException(name + " (set -Dgf.samples to the samples directory)");
+  }
+
+  /**
+   * Writes a synthetic font to a new temporary file, which is deleted
+   * when the virtual machine exits.
+   */
+  static File generate(int count, int width, int height) throws IOException {
+    GFGenerator generator = new GFGenerator();
+    generator.setCharacters(count);
+    generator.setSize(width, height);
+    File f = File.createTempFile("synthetic", ".600gf");
+    f.deleteOnExit();
+    OutputStream os = new FileOutputStream(f);
+    try {
+      generator.write(os);
+    }
+    finally {
+      os.close();
+    }
+    return f;
+  }
+
+}
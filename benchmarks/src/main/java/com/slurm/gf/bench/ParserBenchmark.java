@@ -0,0 +1,151 @@
+// ParserBenchmark.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf.bench;
+import com.slurm.gf.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Times decoding a whole font: the bare readCommand loop, and
+ * GFParser.parse with each of the three kinds of callback.  The
+ * callbacks do nothing but hand what they are given to the Blackhole,
+ * so that the time is the parser's alone.
+ *
+ * @author Richard Blaylock
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+  @Param({"io.2602gf", "bcmr17.118gf", "synthetic-256-400x500"})
+  String font;
+
+  GFFile file;
+
+  @Setup
+  public void setup() throws Exception {
+    file = new GFFile(Fonts.find(font).getPath());
+  }
+
+  @TearDown
+  public void tearDown() {
+    file.close();
+  }
+
+  @Benchmark
+  public void readCommand(Blackhole bh) throws GFFileFormatException {
+    GFFile g = file.duplicate();
+    CommandCursor c = new CommandCursor();
+    while (!g.eof()) {
+      bh.consume(g.readCommand(c));
+    }
+  }
+
+  @Benchmark
+  public void parseEvents(Blackhole bh) {
+    new GFParser(file.duplicate(), new EventSink(bh)).parse();
+  }
+
+  @Benchmark
+  public void parseRows(Blackhole bh) {
+    new GFParser(file.duplicate(), new RowSink(bh)).parse();
+  }
+
+  @Benchmark
+  public void parseCommands(Blackhole bh) {
+    new GFParser(file.duplicate(), new CommandSink(bh)).parse();
+  }
+
+  static class EventSink implements GFEventCallback {
+    Blackhole bh;
+
+    EventSink(Blackhole bh) {
+      this.bh = bh;
+    }
+
+    public void badGF(String msg) {}
+    public void error(int label, String msg) {}
+    public void startSpecialCommands(int location) {}
+    public void paint(int run) { bh.consume(run); }
+    public void boc(int location, int code, int previousPointer,
+                    int minM, int maxM, int minN, int maxN) { bh.consume(code); }
+    public void eoc(int location) { bh.consume(location); }
+    public void skip(int location, int opcode, int rows) { bh.consume(rows); }
+    public void newRow(int location, int offset) { bh.consume(offset); }
+    public void xxx(int location, int[] bytes, int length) { bh.consume(bytes); }
+    public void yyy(int location, int value) { bh.consume(value); }
+    public void noOp(int location) {}
+    public void charLoc(int location, int residue, int dx, int dy,
+                        int width, int pointer) { bh.consume(pointer); }
+    public void pre(int location, int id, int[] comment, int length) { bh.consume(comment); }
+    public void post(int location, int specialPointer, int designSize, int checkSum,
+                     int hppp, int vppp, int minM, int maxM, int minN, int maxN) { bh.consume(designSize); }
+    public void postPost(int location, int postLoc) { bh.consume(postLoc); }
+    public void undefined(int location, int opcode) {}
+  }
+
+  static class RowSink extends EventSink implements GFRowCallback {
+    RowSink(Blackhole bh) {
+      super(bh);
+    }
+
+    public void paintRow(int row, int column, boolean black, int[] runs, int count) {
+      bh.consume(runs);
+    }
+  }
+
+  static class CommandSink extends GFParserCallback {
+    Blackhole bh;
+
+    CommandSink(Blackhole bh) {
+      this.bh = bh;
+    }
+
+    public void badGF(String msg) {}
+    public void error(int label, String msg) {}
+    public void startSpecialCommands(int location) {}
+    public void handlePaintCommand(PaintCommand c) { bh.consume(c); }
+    public void handleBOCCommand(BOCCommand c) { bh.consume(c); }
+    public void handleEOCCommand(EOCCommand c) { bh.consume(c); }
+    public void handleSkipCommand(SkipCommand c) { bh.consume(c); }
+    public void handleNewRowCommand(NewRowCommand c) { bh.consume(c); }
+    public void handleXXXCommand(XXXCommand c) { bh.consume(c); }
+    public void handleYYYCommand(YYYCommand c) { bh.consume(c); }
+    public void handleNoOpCommand(NoOpCommand c) { bh.consume(c); }
+    public void handleCharLocCommand(CharLocCommand c) { bh.consume(c); }
+    public void handlePreCommand(PreCommand c) { bh.consume(c); }
+    public void handlePostCommand(PostCommand c) { bh.consume(c); }
+    public void handlePostPostCommand(PostPostCommand c) { bh.consume(c); }
+    public void handleUndefinedCommand(UndefinedCommand c) { bh.consume(c); }
+  }
+
+}
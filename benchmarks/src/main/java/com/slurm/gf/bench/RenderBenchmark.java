@@ -0,0 +1,108 @@
+// RenderBenchmark.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf.bench;
+import com.slurm.gf.*;
+import java.awt.Color;
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Times the whole of GF2GIFs on one font: parsing, painting each
+ * character in GF2GIFCallback, encoding it at eoc and writing the GIF
+ * file into a temporary directory.  Both the whole-bitmap and the
+ * scanline renderings are measured, with and without tight bounding
+ * boxes.
+ *
+ * @author Richard Blaylock
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+  @Param({"io.2602gf", "bcmr17.118gf", "synthetic-256-400x500"})
+  String font;
+
+  @Param({"false", "true"})
+  boolean scanline;
+
+  @Param({"false", "true"})
+  boolean tight;
+
+  GFFile file;
+  int minN;
+  int maxN;
+  File directory;
+  PrintStream quiet;
+
+  @Setup
+  public void setup() throws Exception {
+    file = new GFFile(Fonts.find(font).getPath());
+    PostCommand post = file.getPostCommand();
+    minN = post.getMinN();
+    maxN = post.getMaxN();
+
+    directory = File.createTempFile("gifs", "");
+    directory.delete();
+    directory.mkdir();
+    quiet = new PrintStream(new OutputStream() {
+      public void write(int b) {
+      }
+    });
+  }
+
+  @TearDown
+  public void tearDown() {
+    file.close();
+    File[] files = directory.listFiles();
+    for (int i = 0; i < files.length; i++) files[i].delete();
+    directory.delete();
+  }
+
+  @Benchmark
+  public int convert() {
+    GF2GIFCallback callback;
+    if (tight) {
+      callback = new GF2GIFCallback(Color.black, Color.white, false, false,
+                                    "char", directory.getPath());
+    }
+    else {
+      callback = new GF2GIFCallback(Color.black, Color.white, false, false,
+                                    minN, maxN, "char", directory.getPath());
+    }
+    callback.setScanlineRendering(scanline);
+    callback.setExitOnWriteFailure(false);
+    callback.setOutput(quiet);
+    new GFParser(file.duplicate(), callback).parse();
+    return callback.getTotalChars();
+  }
+
+}
@@ -0,0 +1,113 @@
+// Throughput.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf.bench;
+import java.io.File;
+
+/**
+ * Measures GF2GIFs end to end, from generic font to GIF files on
+ * disk, and reports characters per second and megabytes of generic
+ * font per second.  Unlike the JMH benchmarks it converts each font
+ * a fixed number of times, after one untimed conversion, which suits
+ * fonts too big for many iterations.
+ * <p>
+ * Fonts are named as for the benchmarks (see Fonts), so
+ * synthetic-1000-2000x2000 converts a thousand generated characters
+ * of two thousand pixels square.
+ *
+ * @author Richard Blaylock
+ * @see RenderBenchmark
+ */
+public class Throughput {
+
+  public static void main(String args[]) throws Exception {
+    int repeats = 5;
+    boolean scanline = false;
+    boolean tight = false;
+    int arg = 0;
+    for (; (arg < args.length) && args[arg].startsWith("-"); arg++) {
+      if (args[arg].equals("-r") && (arg + 1 < args.length)) {
+        repeats = Integer.parseInt(args[++arg]);
+      }
+      else if (args[arg].equals("-scanline")) scanline = true;
+      else if (args[arg].equals("-tight")) tight = true;
+      else usageExit();
+    }
+    if (arg == args.length) usageExit();
+
+    System.out.println(pad("font", 28) + pad("chars", 10) + pad("MB", 10)
+                       + pad("seconds", 10) + pad("chars/s", 12) + pad("MB/s", 10));
+    long totalChars = 0;
+    long totalBytes = 0;
+    long totalNanos = 0;
+    for (; arg < args.length; arg++) {
+      RenderBenchmark conversion = new RenderBenchmark();
+      conversion.font = args[arg];
+      conversion.scanline = scanline;
+      conversion.tight = tight;
+      conversion.setup();
+      long bytes = conversion.file.length();
+      conversion.convert();
+
+      long chars = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < repeats; i++) {
+        chars = chars + conversion.convert();
+      }
+      long nanos = System.nanoTime() - start;
+      conversion.tearDown();
+
+      report(new File(args[arg]).getName(), chars, bytes * repeats, nanos);
+      totalChars = totalChars + chars;
+      totalBytes = totalBytes + bytes * repeats;
+      totalNanos = totalNanos + nanos;
+    }
+    report("total", totalChars, totalBytes, totalNanos);
+  }
+
+  static void report(String name, long chars, long bytes, long nanos) {
+    double seconds = nanos / 1e9;
+    double megabytes = bytes / 1e6;
+    System.out.println(pad(name, 28) + pad(Long.toString(chars), 10)
+                       + pad(String.format("%.2f", megabytes), 10)
+                       + pad(String.format("%.3f", seconds), 10)
+                       + pad(String.format("%.0f", chars / seconds), 12)
+                       + pad(String.format("%.2f", megabytes / seconds), 10));
+  }
+
+  static String pad(String s, int width) {
+    StringBuilder sb = new StringBuilder(s);
+    while (sb.length() < width) sb.append(' ');
+    return sb.toString();
+  }
+
+  private static void usageExit() {
+    System.out.println("usage: java -cp benchmarks.jar com.slurm.gf.bench.Throughput");
+    System.out.println("         [-r repeats] [-scanline] [-tight] font...");
+    System.exit(0);
+  }
+
+}
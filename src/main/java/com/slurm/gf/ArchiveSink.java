@@ -0,0 +1,331 @@
+// ArchiveSink.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * A GlyphSink that puts every file into a single ZIP or tar archive,
+ * written to a stream, so that a font costs one file (or none, on
+ * standard output) instead of one for each character.
+ * <p>
+ * Entries are named after the paths they are given, with any leading
+ * "/" or "./" removed, and all have the same modification time, so
+ * that converting the same font twice gives the same archive.  The
+ * time is taken from the SOURCE_DATE_EPOCH environment variable if it
+ * is set; otherwise it is the earliest a ZIP file can record, 1 January
+ * 1980.  Entries are written in the order they come, unless the sink
+ * is sorted, in which case they are held back and written in order of
+ * name when it is closed; that is for converters whose threads finish
+ * characters in no particular order.  Since a sorted sink holds every
+ * file until the end, converters of many fonts use a group for each
+ * font instead (see openGroup), which holds just that font's files.
+ * In a sorted sink or group, or a tar archive, a name written twice
+ * keeps its last contents, as a file would; a ZIP file cannot hold the
+ * same name twice, so otherwise a ZIP sink refuses the second.
+ *
+ * @author Richard Blaylock
+ * @see GF2GIFs
+ */
+public class ArchiveSink implements GlyphSink {
+
+  /** a ZIP archive of compressed entries */
+  public static final int ZIP = 0;
+
+  /** a ZIP archive of uncompressed entries */
+  public static final int ZIP_STORED = 1;
+
+  /** a POSIX (ustar) tar archive */
+  public static final int TAR = 2;
+
+  /** 1 January 1980, in seconds since 1970 */
+  static final long DOS_EPOCH = 315532800L;
+
+  static final int TAR_BLOCK = 512;
+
+  /** tar archives are padded to a whole number of these */
+  static final int TAR_RECORD = 20 * TAR_BLOCK;
+
+  int format;
+  OutputStream out;
+  ZipOutputStream zip;
+
+  /** the modification time of every entry, in seconds since 1970 */
+  long time;
+
+  boolean sorted;
+  TreeMap<String, byte[]> held = new TreeMap<String, byte[]>();
+  HashSet<String> names = new HashSet<String>();
+
+  /** the number of bytes written to a tar archive */
+  long tarLength;
+
+  boolean closed;
+
+  /**
+   * @param out where to write the archive; it is closed with the sink
+   * @param format ZIP, ZIP_STORED or TAR
+   */
+  public ArchiveSink(OutputStream out, int format) {
+    this.format = format;
+    this.out = new BufferedOutputStream(out, 65536);
+    if (format != TAR) {
+      zip = new ZipOutputStream(this.out);
+      zip.setLevel(Deflater.BEST_COMPRESSION);
+    }
+    time = DOS_EPOCH;
+    String epoch = System.getenv("SOURCE_DATE_EPOCH");
+    if (epoch != null) {
+      try {
+        time = Long.parseLong(epoch.trim());
+      }
+      catch (NumberFormatException nfe) {
+        // keep the default
+      }
+    }
+  }
+
+  /**
+   * Sets the modification time of every entry.
+   *
+   * @param seconds the time, in seconds since 1970
+   */
+  public void setTime(long seconds) {
+    time = seconds;
+  }
+
+  /**
+   * Chooses whether to hold entries back until the sink is closed
+   * and write them in order of name.
+   */
+  public void setSorted(boolean b) {
+    sorted = b;
+  }
+
+  public synchronized void write(String name, byte[] bytes, int offset, int length) throws IOException {
+    name = entryName(name);
+    if (sorted) {
+      held.put(name, Arrays.copyOfRange(bytes, offset, offset + length));
+      return;
+    }
+    if ((zip != null) && !names.add(name)) {
+      throw new IOException("duplicate archive entry " + name);
+    }
+    writeEntry(name, bytes, offset, length);
+  }
+
+  /**
+   * Opens a group of entries, which holds the files written to it
+   * until it is closed and then writes them to this archive together,
+   * in order of name.  Groups may be written to by different threads,
+   * and closed in any order.
+   *
+   * @return the group, a sink of its own
+   */
+  public GlyphSink openGroup() {
+    return new GlyphSink() {
+        TreeMap<String, byte[]> group = new TreeMap<String, byte[]>();
+
+        public synchronized void write(String name, byte[] bytes, int offset, int length) {
+          group.put(entryName(name), Arrays.copyOfRange(bytes, offset, offset + length));
+        }
+
+        public synchronized void close() throws IOException {
+          try {
+            writeAll(group);
+          }
+          finally {
+            group.clear();
+          }
+        }
+      };
+  }
+
+  /**
+   * Writes entries held back by a group.
+   */
+  synchronized void writeAll(SortedMap<String, byte[]> entries) throws IOException {
+    for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+      if ((zip != null) && !names.add(e.getKey())) {
+        throw new IOException("duplicate archive entry " + e.getKey());
+      }
+      writeEntry(e.getKey(), e.getValue(), 0, e.getValue().length);
+    }
+  }
+
+  /**
+   * @return the name of the entry for the given path
+   */
+  static String entryName(String path) {
+    String name = path.replace(File.separatorChar, '/');
+    while (name.startsWith("/") || name.startsWith("./")) {
+      name = name.substring(name.startsWith("/") ? 1 : 2);
+    }
+    return name;
+  }
+
+  private void writeEntry(String name, byte[] bytes, int offset, int length) throws IOException {
+    if (zip != null) {
+      ZipEntry entry = new ZipEntry(name);
+      entry.setTimeLocal(LocalDateTime.ofEpochSecond(Math.max(time, DOS_EPOCH), 0, ZoneOffset.UTC));
+      if (format == ZIP_STORED) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(length);
+        entry.setCompressedSize(length);
+        entry.setCrc(crc.getValue());
+      }
+      zip.putNextEntry(entry);
+      zip.write(bytes, offset, length);
+      zip.closeEntry();
+    }
+    else {
+      writeTarHeader(name, length);
+      out.write(bytes, offset, length);
+      tarLength = tarLength + length;
+      padTar(TAR_BLOCK);
+    }
+  }
+
+  private void writeTarHeader(String name, int length) throws IOException {
+    byte[] header = new byte[TAR_BLOCK];
+    byte[] path = name.getBytes(StandardCharsets.UTF_8);
+
+    // names too long for the name field are split between it and
+    // the prefix field, at a slash
+    int split = 0;
+    if (path.length > 100) {
+      for (int i = 0; i < path.length; i++) {
+        if ((path[i] == '/') && (i <= 155) && (path.length - i - 1 <= 100)) {
+          split = i;
+          break;
+        }
+      }
+      if (split == 0) throw new IOException("name too long for a tar archive: " + name);
+      System.arraycopy(path, 0, header, 345, split);
+      System.arraycopy(path, split + 1, header, 0, path.length - split - 1);
+    }
+    else {
+      System.arraycopy(path, 0, header, 0, path.length);
+    }
+    octal(header, 100, 8, 0644);
+    octal(header, 108, 8, 0);
+    octal(header, 116, 8, 0);
+    octal(header, 124, 12, length);
+    octal(header, 136, 12, time);
+    header[156] = '0';
+    ascii(header, 257, "ustar");
+    ascii(header, 263, "00");
+
+    // the checksum is taken with its own field full of spaces
+    Arrays.fill(header, 148, 156, (byte)' ');
+    int sum = 0;
+    for (int i = 0; i < TAR_BLOCK; i++) {
+      sum = sum + (header[i] & 0xff);
+    }
+    octal(header, 148, 7, sum);
+
+    out.write(header);
+    tarLength = tarLength + TAR_BLOCK;
+  }
+
+  /**
+   * Writes a number as size - 1 octal digits and a NUL.
+   */
+  private static void octal(byte[] header, int offset, int size, long value) {
+    for (int i = size - 2; i >= 0; i--) {
+      header[offset + i] = (byte)('0' + (value & 7));
+      value = value >>> 3;
+    }
+    header[offset + size - 1] = 0;
+  }
+
+  private static void ascii(byte[] header, int offset, String s) {
+    for (int i = 0; i < s.length(); i++) {
+      header[offset + i] = (byte)s.charAt(i);
+    }
+  }
+
+  /**
+   * Writes zeros up to the next multiple of size.
+   */
+  private void padTar(int size) throws IOException {
+    int pad = (int)((size - (tarLength % size)) % size);
+    out.write(new byte[pad]);
+    tarLength = tarLength + pad;
+  }
+
+  /**
+   * Writes any entries held back and the end of the archive.
+   */
+  public synchronized void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    try {
+      for (Map.Entry<String, byte[]> e : held.entrySet()) {
+        writeEntry(e.getKey(), e.getValue(), 0, e.getValue().length);
+      }
+      held.clear();
+      if (zip != null) {
+        zip.finish();
+      }
+      else {
+        // two empty blocks end the archive
+        out.write(new byte[2 * TAR_BLOCK]);
+        tarLength = tarLength + 2 * TAR_BLOCK;
+        padTar(TAR_RECORD);
+      }
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Closes the sink when the JVM exits, if it has not been closed
+   * already, so that a run ended early by System.exit still leaves a
+   * whole archive.
+   */
+  public void closeOnExit() {
+    Runtime.getRuntime().addShutdownHook(new Thread("archive") {
+        public void run() {
+          try {
+            close();
+          }
+          catch (IOException ioe) {
+            ioe.printStackTrace();
+          }
+        }
+      });
+  }
+
+}
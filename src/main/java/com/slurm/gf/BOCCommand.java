@@ -73,4 +73,8 @@ public class BOCCommand extends Command {
     return maxN;
   }
 
+  public void accept(GFParserCallback c) {
+    c.handleBOCCommand(this);
+  }
+
 }
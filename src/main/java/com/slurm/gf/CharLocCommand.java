@@ -66,4 +66,8 @@ public class CharLocCommand extends Command {
     return beginPointer;
   }
 
+  public void accept(GFParserCallback c) {
+    c.handleCharLocCommand(this);
+  }
+
 }
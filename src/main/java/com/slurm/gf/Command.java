@@ -291,6 +291,87 @@ public abstract class Command {
   static final int GF_ID_BYTE = 131;
   static final int GF_POST_SIG = 223;
 
+  // the kinds of command, which are what decoding and dispatch
+  // actually depend on
+  static final int KIND_PAINT = 0;
+  static final int KIND_BOC = 1;
+  static final int KIND_BOC1 = 2;
+  static final int KIND_EOC = 3;
+  static final int KIND_SKIP = 4;
+  static final int KIND_NEW_ROW = 5;
+  static final int KIND_XXX = 6;
+  static final int KIND_YYY = 7;
+  static final int KIND_NO_OP = 8;
+  static final int KIND_CHAR_LOC = 9;
+  static final int KIND_CHAR_LOC0 = 10;
+  static final int KIND_PRE = 11;
+  static final int KIND_POST = 12;
+  static final int KIND_POST_POST = 13;
+  static final int KIND_UNDEFINED = 14;
+
+  /** the names of the kinds, indexed by KIND_ constant */
+  static final String[] KIND_NAMES = {
+    "paint", "boc", "boc1", "eoc", "skip", "new_row", "xxx", "yyy",
+    "no_op", "char_loc", "char_loc0", "pre", "post", "post_post", "undefined"
+  };
+
+  /**
+   * The kind of command that each opcode begins.
+   */
+  static final byte[] KIND = new byte[256];
+
+  /**
+   * The number of bytes in the operand that follows each opcode: the
+   * run length of paint1 through paint3, the number of rows (less one)
+   * of skip1 through skip3, and the string length of xxx1 through
+   * xxx4.  Zero for every other opcode.
+   */
+  static final byte[] OPERAND_WIDTH = new byte[256];
+
+  /**
+   * The value that each opcode implies by itself, to which its operand
+   * (if any) is added: the run length of paint_0 through paint_63, one
+   * for the skips, and the offset of new_row_0 through new_row_164.
+   */
+  static final int[] IMPLIED = new int[256];
+
+  static {
+    for (int o = 0; o < 256; o++) {
+      KIND[o] = KIND_UNDEFINED;
+    }
+    for (int o = PAINT_0; o <= PAINT_63; o++) {
+      KIND[o] = KIND_PAINT;
+      IMPLIED[o] = o - PAINT_0;
+    }
+    for (int o = PAINT1; o <= PAINT3; o++) {
+      KIND[o] = KIND_PAINT;
+      OPERAND_WIDTH[o] = (byte)(o - PAINT1 + 1);
+    }
+    KIND[BOC] = KIND_BOC;
+    KIND[BOC1] = KIND_BOC1;
+    KIND[EOC] = KIND_EOC;
+    for (int o = SKIP0; o <= SKIP3; o++) {
+      KIND[o] = KIND_SKIP;
+      OPERAND_WIDTH[o] = (byte)(o - SKIP0);
+      IMPLIED[o] = 1;
+    }
+    for (int o = NEW_ROW_0; o <= NEW_ROW_164; o++) {
+      KIND[o] = KIND_NEW_ROW;
+      IMPLIED[o] = o - NEW_ROW_0;
+    }
+    for (int o = XXX1; o <= XXX4; o++) {
+      KIND[o] = KIND_XXX;
+      OPERAND_WIDTH[o] = (byte)(o - XXX1 + 1);
+    }
+    KIND[YYY] = KIND_YYY;
+    KIND[NO_OP] = KIND_NO_OP;
+    KIND[CHAR_LOC] = KIND_CHAR_LOC;
+    KIND[CHAR_LOC0] = KIND_CHAR_LOC0;
+    KIND[PRE] = KIND_PRE;
+    KIND[POST] = KIND_POST;
+    KIND[POST_POST] = KIND_POST_POST;
+  }
+
   /**
    * The zero-based location (byte number) of this command within
    * the GF file.
@@ -314,6 +395,14 @@ public abstract class Command {
     opcode = o;
   }
 
+  /**
+   * Calls the method of the given callback that handles commands of
+   * this class.
+   *
+   * @param c the callback
+   */
+  public abstract void accept(GFParserCallback c);
+
   /**
    * @return the opcode of this Command.
    */
@@ -0,0 +1,310 @@
+// CommandCursor.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+
+/**
+ * A reusable, mutable view of the most recently decoded command in a
+ * generic font.
+ * <p>
+ * GFSource.readCommand(CommandCursor) decodes each opcode and its
+ * parameters into the primitive fields of a cursor, so that a parser
+ * can step through millions of paint, skip and newrow commands without
+ * creating an object for each of them.  Only the getters belonging to
+ * the current opcode are meaningful, and every read overwrites them;
+ * callers that want to keep a command around should call toCommand().
+ *
+ * @author Richard Blaylock
+ * @see GFSource
+ * @see Command
+ */
+public final class CommandCursor {
+
+  int location;
+  int opcode;
+
+  // paint, skip and newrow
+  int numPixels;
+  int rows;
+  int offset;
+
+  // boc, and the bounding box of post
+  int characterCode;
+  int previousCharacterPointer;
+  int minM;
+  int maxM;
+  int minN;
+  int maxN;
+
+  /**
+   * The kinds of optional command whose bytes are wanted, as
+   * GFSelectiveCallback.WANTS_ constants.  The strings of xxx commands
+   * and the values of yyy commands that are not wanted are skipped
+   * over, leaving no bytes in the cursor.
+   */
+  int interests = GFSelectiveCallback.WANTS_ALL;
+
+  /**
+   * The number of commands of each kind (indexed by Command.KIND_
+   * constant) that have been read into this cursor since the counts
+   * were last cleared.
+   */
+  long[] kindCounts = new long[Command.KIND_NAMES.length];
+
+  // xxx, yyy and pre
+  int xlength;
+  int[] bytes = new int[64];
+  int byteCount;
+  int idByte;
+
+  // char_loc
+  int characterResidue;
+  int dx;
+  int dy;
+  int width;
+  int beginPointer;
+
+  // post and postpost
+  int postSpecialPointer;
+  int designSize;
+  int checkSum;
+  int hppp;
+  int vppp;
+  int postLoc;
+
+  /**
+   * Makes room for at least k special bytes.
+   *
+   * @return the (possibly new) byte array
+   */
+  int[] ensureBytes(int k) {
+    if (bytes.length < k) {
+      bytes = new int[Math.max(k, 2 * bytes.length)];
+    }
+    return bytes;
+  }
+
+  /**
+   * @return the opcode of the current command.
+   */
+  public int getOpCode() {
+    return opcode;
+  }
+
+  /**
+   * @return the byte location of the current command within the GF file.
+   */
+  public int getLocation() {
+    return location;
+  }
+
+  /**
+   * @return the number of pixels to paint (paint commands)
+   */
+  public int getNumPixels() {
+    return numPixels;
+  }
+
+  /**
+   * @return the number of rows to move down (skip commands)
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * @return the column offset of the new row (newrow commands)
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  public int getCharacterCode() {
+    return characterCode;
+  }
+
+  public int getPreviousCharacterPointer() {
+    return previousCharacterPointer;
+  }
+
+  /**
+   * @return the minimum column (boc and post commands)
+   */
+  public int getMinM() {
+    return minM;
+  }
+
+  /**
+   * @return the maximum column (boc and post commands)
+   */
+  public int getMaxM() {
+    return maxM;
+  }
+
+  /**
+   * @return the minimum row (boc and post commands)
+   */
+  public int getMinN() {
+    return minN;
+  }
+
+  /**
+   * @return the maximum row (boc and post commands)
+   */
+  public int getMaxN() {
+    return maxN;
+  }
+
+  /**
+   * @return the declared length of an xxx command's string
+   */
+  public int getXLength() {
+    return xlength;
+  }
+
+  /**
+   * The bytes of an xxx string, of a yyy value, or of the preamble
+   * comment.  Only the first getByteCount() entries are valid, and the
+   * array is reused by later commands.
+   */
+  public int[] getBytes() {
+    return bytes;
+  }
+
+  public int getByteCount() {
+    return byteCount;
+  }
+
+  /**
+   * @return the four bytes of a yyy command as a signed int
+   */
+  public int getYYYValue() {
+    return (bytes[0] << 24) | (bytes[1] << 16) | (bytes[2] << 8) | bytes[3];
+  }
+
+  public int getIDByte() {
+    return idByte;
+  }
+
+  public int getCharacterResidue() {
+    return characterResidue;
+  }
+
+  public int getDX() {
+    return dx;
+  }
+
+  public int getDY() {
+    return dy;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getBeginPointer() {
+    return beginPointer;
+  }
+
+  public int getPostSpecialPointer() {
+    return postSpecialPointer;
+  }
+
+  public int getDesignSize() {
+    return designSize;
+  }
+
+  public int getCheckSum() {
+    return checkSum;
+  }
+
+  public int getHPPP() {
+    return hppp;
+  }
+
+  public int getVPPP() {
+    return vppp;
+  }
+
+  public int getPostLoc() {
+    return postLoc;
+  }
+
+  /**
+   * @return a copy of the first getByteCount() special bytes
+   */
+  private int[] copyBytes() {
+    int[] retVal = new int[byteCount];
+    System.arraycopy(bytes, 0, retVal, 0, byteCount);
+    return retVal;
+  }
+
+  /**
+   * Creates a Command object holding the current command, for callers
+   * that need to keep it after the cursor has moved on.
+   *
+   * @return the concrete subclass of Command corresponding to the opcode
+   */
+  public Command toCommand() {
+    int o = opcode;
+    int loc = location;
+
+    switch (Command.KIND[o]) {
+    case Command.KIND_PAINT:
+      return new PaintCommand(loc, o, numPixels);
+    case Command.KIND_BOC:
+    case Command.KIND_BOC1:
+      return new BOCCommand(loc, o, characterCode, previousCharacterPointer,
+                            minM, maxM, minN, maxN);
+    case Command.KIND_EOC:
+      return new EOCCommand(loc, o);
+    case Command.KIND_SKIP:
+      return new SkipCommand(loc, o, rows);
+    case Command.KIND_NEW_ROW:
+      return new NewRowCommand(loc, o, offset);
+    case Command.KIND_XXX:
+      return new XXXCommand(loc, o, xlength, copyBytes());
+    case Command.KIND_YYY:
+      return new YYYCommand(loc, o, copyBytes());
+    case Command.KIND_NO_OP:
+      return new NoOpCommand(loc, o);
+    case Command.KIND_CHAR_LOC:
+    case Command.KIND_CHAR_LOC0:
+      return new CharLocCommand(loc, o, characterResidue, dx, dy, width,
+                                beginPointer);
+    case Command.KIND_PRE:
+      return new PreCommand(loc, o, idByte, copyBytes());
+    case Command.KIND_POST:
+      return new PostCommand(loc, o, postSpecialPointer, designSize,
+                             checkSum, hppp, vppp, minM, maxM, minN, maxN);
+    case Command.KIND_POST_POST:
+      return new PostPostCommand(loc, o, postLoc);
+    default:
+      return new UndefinedCommand(loc, o);
+    }
+  }
+
+}
@@ -0,0 +1,93 @@
+// ConversionMetrics.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+
+/**
+ * The metrics that parsing and converting fonts record in
+ * MetricsRegistry.DEFAULT.
+ *
+ * @author Richard Blaylock
+ */
+final class ConversionMetrics {
+
+  static final MetricsRegistry REGISTRY = MetricsRegistry.DEFAULT;
+
+  static final MetricsRegistry.Counter BYTES_READ =
+      REGISTRY.counter("gf_bytes_read_total", "Bytes of generic font read by parsers.");
+
+  /** one counter for each Command.KIND_ constant */
+  static final MetricsRegistry.Counter[] COMMANDS = new MetricsRegistry.Counter[Command.KIND_NAMES.length];
+  static {
+    for (int k = 0; k < COMMANDS.length; k++) {
+      COMMANDS[k] = REGISTRY.counter("gf_commands_total", "Commands decoded by parsers, by kind.",
+                                     "kind", Command.KIND_NAMES[k]);
+    }
+  }
+
+  static final MetricsRegistry.Counter GLYPHS =
+      REGISTRY.counter("gf_glyphs_rendered_total", "GIF images written.");
+
+  static final MetricsRegistry.Counter OUTPUT_BYTES =
+      REGISTRY.counter("gf_output_bytes_total", "Bytes of GIF images written.");
+
+  static final MetricsRegistry.Counter WRITE_FAILURES =
+      REGISTRY.counter("gf_write_failures_total", "GIF images that could not be written.");
+
+  static final String PHASE_NAME = "gf_phase_seconds";
+  static final String PHASE_HELP = "Time spent on one character in each phase of conversion.";
+
+  /** boc to eoc, which takes in painting when that is done as the runs arrive */
+  static final MetricsRegistry.Histogram CHARACTER =
+      REGISTRY.histogram(PHASE_NAME, PHASE_HELP, "phase", "character");
+
+  static final MetricsRegistry.Histogram RASTER =
+      REGISTRY.histogram(PHASE_NAME, PHASE_HELP, "phase", "raster");
+
+  static final MetricsRegistry.Histogram ENCODE =
+      REGISTRY.histogram(PHASE_NAME, PHASE_HELP, "phase", "encode");
+
+  static final MetricsRegistry.Histogram WRITE =
+      REGISTRY.histogram(PHASE_NAME, PHASE_HELP, "phase", "write");
+
+  private ConversionMetrics() {
+  }
+
+  /**
+   * Adds the commands a cursor has counted to COMMANDS, and starts
+   * its counts again from zero.
+   */
+  static void recordCommands(CommandCursor cursor) {
+    long[] counts = cursor.kindCounts;
+    for (int k = 0; k < counts.length; k++) {
+      if (counts[k] != 0) {
+        COMMANDS[k].add(counts[k]);
+        counts[k] = 0;
+      }
+    }
+  }
+
+}
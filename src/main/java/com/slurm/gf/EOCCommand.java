@@ -35,4 +35,8 @@ public class EOCCommand extends Command {
     super(l, o);
   }
 
+  public void accept(GFParserCallback c) {
+    c.handleEOCCommand(this);
+  }
+
 }
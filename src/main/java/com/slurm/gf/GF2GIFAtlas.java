@@ -0,0 +1,226 @@
+// GF2GIFAtlas.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.io.*;
+import java.awt.Color;
+import java.util.*;
+
+/**
+ * A GF2GIFCallback that, instead of writing a GIF file for each
+ * character, packs all the characters of a font into as few atlas
+ * images as it can, each at most a given size, so that a web page can
+ * fetch a whole font in one or two requests.
+ * <p>
+ * Every character keeps its tight bounding box.  Once the postamble
+ * has been parsed, the characters are placed, tallest first, by a
+ * SkylinePacker, with a blank pixel between them, and the images are
+ * written to <i>prefix</i>atlas<i>N</i>.gif; each is cut off below
+ * its lowest character.  The rectangles are written to
+ * <i>prefix</i>atlas.txt, which starts with a line for each image:
+ * <pre>
+ * page index file width height
+ * </pre>
+ * followed by a line for each character, in order of code:
+ * <pre>
+ * char code page x y width height originX originY dx tfmWidth
+ * </pre>
+ * where originX and originY give the reference point, at the left end
+ * of the baseline, relative to the top left corner of the rectangle
+ * (from the boc's min_m and max_n), and dx and tfmWidth are from the
+ * char_loc for the code, in pixels times 2<sup>16</sup> and in units
+ * of 2<sup>-20</sup> times the design size, or - if there is none.
+ * When a code occurs more than once, only its last character is kept.
+ *
+ * @author Richard Blaylock
+ * @see GF2GIFs
+ */
+public class GF2GIFAtlas extends GF2GIFCallback {
+
+  /** the default size of the atlas images */
+  public static final int PAGE_SIZE = 1024;
+
+  /** the blank pixels left between characters */
+  static final int PADDING = 1;
+
+  /** the largest width or height a GIF image can have */
+  static final int MAX_PAGE_SIZE = 65535;
+
+  int pageSize;
+
+  /** the characters, by code */
+  TreeMap<Integer, Entry> entries = new TreeMap<Integer, Entry>();
+
+  // the char_locs, by residue
+  int[] dx = new int[256];
+  int[] tfmWidth = new int[256];
+  boolean[] located = new boolean[256];
+
+  /** the width, height and number of characters of each image */
+  ArrayList<int[]> pages = new ArrayList<int[]>();
+
+  /**
+   * A character waiting to be placed.
+   */
+  static class Entry {
+    int code;
+    GlyphBitmap bitmap;
+    int minM, maxN;
+    int page, x, y;
+  }
+
+  /**
+   * @param pageSize the largest width and height of an atlas image;
+   * it is made bigger if a character would not fit
+   */
+  public GF2GIFAtlas(Color foreground, Color background, boolean hasTransparent, boolean transparentBackground,
+                     String filePrefix, String targetDirectory, int pageSize) {
+    super(foreground, background, hasTransparent, transparentBackground, filePrefix, targetDirectory);
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * The char_locs give the advance widths.
+   */
+  public int getInterests() {
+    return WANTS_CHAR_LOC;
+  }
+
+  /**
+   * Every character is painted in full, so this has no effect.
+   */
+  public void setScanlineRendering(boolean b) {
+  }
+
+  /**
+   * Keeps the character for the atlas, instead of writing it out.
+   */
+  void writeGIF(int characterCode, GlyphBitmap glyph, int minN, int maxN) {
+    Entry e = new Entry();
+    e.code = characterCode;
+    e.bitmap = glyph.copy();
+    e.minM = minM;
+    e.maxN = maxN;
+    entries.put(Integer.valueOf(characterCode), e);
+  }
+
+  public void charLoc(int location, int residue, int dx, int dy,
+                      int width, int pointer) {
+    this.dx[residue & 0xff] = dx;
+    tfmWidth[residue & 0xff] = width;
+    located[residue & 0xff] = true;
+  }
+
+  public void postPost(int location, int postLoc) {
+    super.postPost(location, postLoc);
+    pack();
+    writeAtlas();
+  }
+
+  /**
+   * Places every character.
+   */
+  void pack() {
+    Entry[] order = entries.values().toArray(new Entry[0]);
+    Arrays.sort(order, new Comparator<Entry>() {
+        public int compare(Entry a, Entry b) {
+          int c = b.bitmap.getHeight() - a.bitmap.getHeight();
+          if (c == 0) c = b.bitmap.getWidth() - a.bitmap.getWidth();
+          if (c == 0) c = a.code - b.code;
+          return c;
+        }
+      });
+
+    int size = pageSize;
+    for (Entry e : order) {
+      size = Math.max(size, Math.max(e.bitmap.getWidth(), e.bitmap.getHeight()) + PADDING);
+    }
+    size = Math.min(size, MAX_PAGE_SIZE);
+
+    ArrayList<SkylinePacker> packers = new ArrayList<SkylinePacker>();
+    for (Entry e : order) {
+      int w = e.bitmap.getWidth() + PADDING;
+      int h = e.bitmap.getHeight() + PADDING;
+      int p = 0;
+      for (; p < packers.size(); p++) {
+        if (packers.get(p).insert(w, h)) break;
+      }
+      if (p == packers.size()) {
+        packers.add(new SkylinePacker(size, size));
+        packers.get(p).insert(w, h);
+      }
+      e.page = p;
+      e.x = packers.get(p).getX();
+      e.y = packers.get(p).getY();
+    }
+
+    // each image is cut down to the characters on it
+    pages.clear();
+    for (int p = 0; p < packers.size(); p++) {
+      pages.add(new int[] {1, 1, 0});
+    }
+    for (Entry e : order) {
+      int[] page = pages.get(e.page);
+      page[0] = Math.max(page[0], e.x + e.bitmap.getWidth());
+      page[1] = Math.max(page[1], e.y + e.bitmap.getHeight());
+      page[2]++;
+    }
+  }
+
+  /**
+   * Writes the atlas images and their table.
+   */
+  void writeAtlas() {
+    GlyphBitmap image = new GlyphBitmap();
+    for (int p = 0; p < pages.size(); p++) {
+      int[] page = pages.get(p);
+      image.reset(page[0], page[1]);
+      for (Entry e : entries.values()) {
+        if (e.page == p) image.draw(e.bitmap, e.x, e.y);
+      }
+      encoder.encode(image, 0, page[1]);
+      if (writeEncoded(filePrefix + "atlas" + p + ".gif")) ConversionMetrics.GLYPHS.add(page[2]);
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PrintWriter table = new PrintWriter(new OutputStreamWriter(bytes));
+    for (int p = 0; p < pages.size(); p++) {
+      int[] page = pages.get(p);
+      table.println("page " + p + " " + new File(filePrefix + "atlas" + p + ".gif").getName() +
+                    " " + page[0] + " " + page[1]);
+    }
+    for (Entry e : entries.values()) {
+      int residue = e.code & 0xff;
+      table.println("char " + e.code + " " + e.page + " " + e.x + " " + e.y + " " +
+                    e.bitmap.getWidth() + " " + e.bitmap.getHeight() + " " +
+                    (-e.minM) + " " + (e.maxN + 1) + " " +
+                    (located[residue] ? (dx[residue] + " " + tfmWidth[residue]) : "- -"));
+    }
+    table.close();
+    writeBytes(filePrefix + "atlas.txt", bytes.toByteArray(), bytes.size());
+  }
+
+}
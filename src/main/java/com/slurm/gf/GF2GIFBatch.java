@@ -0,0 +1,324 @@
+// GF2GIFBatch.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+
+/**
+ * Converts many generic font files in a single run, several at a time,
+ * on a work-stealing thread pool.
+ * <p>
+ * Inputs may be GF files, directories (which are searched for files
+ * whose names end in <i>nnn</i>gf), or globs.  The images of each font
+ * go into a directory of their own under the target directory, named
+ * after the font's path relative to the directory or the fixed part of
+ * the glob it was found through.  The largest files are started first,
+ * so that a big font is not left running alone at the end.  Nothing is
+ * printed while the files are converted; a summary, with the messages
+ * of every file that failed, is printed at the end.
+ *
+ * @author Richard Blaylock
+ * @see GF2GIFs
+ */
+public class GF2GIFBatch {
+
+  /** the names of the files found when searching directories */
+  static final Pattern GF_NAME = Pattern.compile(".*\\.[0-9]*gf");
+
+  GF2GIFs converter;
+  String targetDirectory;
+  int threads;
+
+  /** the files to convert, in the order they were found */
+  ArrayList<Job> jobs = new ArrayList<Job>();
+
+  /** the files already added, so that each is converted only once */
+  HashSet<String> seen = new HashSet<String>();
+
+  /** inputs that named no GF files */
+  ArrayList<String> unmatched = new ArrayList<String>();
+
+  /**
+   * The conversion of a single file.
+   */
+  class Job implements Runnable {
+    File file;
+    File outputDirectory;
+    long size;
+
+    int characters;
+    boolean ok;
+    String messages = "";
+
+    Job(File file, File outputDirectory) {
+      this.file = file;
+      this.outputDirectory = outputDirectory;
+      size = file.length();
+    }
+
+    public void run() {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      PrintStream log = new PrintStream(bytes, true);
+      GlyphSink group = null;
+      try {
+        GFFile gfInputFile = new GFFile(file.getPath());
+        try {
+          GF2GIFCallback callback = converter.createCallback(gfInputFile, false, outputDirectory.getPath());
+          callback.setOutput(log);
+          callback.setExitOnWriteFailure(false);
+          if (converter.sink == null) {
+            // the directory is only made once there is a file to fill it
+            callback.setSink(new FileSink() {
+                public void write(String name, byte[] bytes, int offset, int length) throws IOException {
+                  makeOutputDirectory();
+                  super.write(name, bytes, offset, length);
+                }
+              });
+          }
+          else if (converter.sink instanceof ArchiveSink) {
+            // the font's entries go into the archive together when it is done
+            group = ((ArchiveSink)converter.sink).openGroup();
+            callback.setSink(group);
+          }
+          GFParser parser = new GFParser(gfInputFile, callback);
+          parser.setErrorOutput(log);
+          parser.parse();
+          characters = callback.getTotalChars();
+          ok = callback.isComplete();
+        }
+        finally {
+          gfInputFile.close();
+          if (group != null) closeGroup(group, log);
+        }
+      }
+      catch (FileNotFoundException fnfe) {
+        log.println("! could not open " + fnfe.getMessage());
+      }
+      catch (GFFileFormatException gfffe) {
+        log.println("! bad GF file: " + gfffe.getMessage());
+      }
+      catch (RuntimeException re) {
+        re.printStackTrace(log);
+      }
+      log.flush();
+      messages = bytes.toString();
+    }
+
+    /**
+     * Writes a font's entries into the archive.
+     */
+    void closeGroup(GlyphSink group, PrintStream log) {
+      try {
+        group.close();
+      }
+      catch (IOException ioe) {
+        log.println("! could not write to the archive: " + ioe.getMessage());
+        ok = false;
+      }
+    }
+
+    /**
+     * Creates the output directory, if it does not already exist.
+     *
+     * @exception FileNotFoundException if it cannot be created
+     */
+    void makeOutputDirectory() throws FileNotFoundException {
+      if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+        throw new FileNotFoundException("could not create directory " + outputDirectory);
+      }
+    }
+  }
+
+  /**
+   * Creates a batch with no files in it yet.
+   *
+   * @param converter the options to convert every file with
+   * @param targetDirectory the directory under which each font gets a
+   * directory of its own, or "" for the current directory
+   * @param threads the number of files to convert at once
+   */
+  public GF2GIFBatch(GF2GIFs converter, String targetDirectory, int threads) {
+    this.converter = converter;
+    this.targetDirectory = targetDirectory;
+    this.threads = threads;
+  }
+
+  /**
+   * Adds a GF file, every GF file under a directory, or every file
+   * that matches a glob.
+   */
+  public void addInput(String name) throws IOException {
+    File file = new File(name);
+    if (file.isDirectory()) {
+      addTree(file.toPath(), GF_NAME, name);
+    }
+    else if (file.exists() || !isGlob(name)) {
+      add(file, file.getName());
+    }
+    else {
+      // search from the last directory before the first wildcard
+      int wild = 0;
+      while (!isGlob(name.substring(0, wild + 1))) wild++;
+      int slash = name.lastIndexOf('/', wild);
+      Path base = Paths.get((slash < 0) ? "" : name.substring(0, slash + 1));
+      PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + name);
+      // a file already added by another input still counts as a match
+      int matched = 0;
+      if (Files.isDirectory(base)) {
+        Iterator<Path> i = Files.walk(base).sorted().iterator();
+        while (i.hasNext()) {
+          Path p = i.next();
+          if (matcher.matches(p) && Files.isRegularFile(p)) {
+            add(p.toFile(), base.relativize(p).toString());
+            matched++;
+          }
+        }
+      }
+      if (matched == 0) unmatched.add(name);
+    }
+  }
+
+  /**
+   * Adds the files named in a list, one per line, or separated by NUL
+   * characters if there are any.
+   */
+  public void addList(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    int count;
+    while ((count = in.read(buf)) > 0) {
+      bytes.write(buf, 0, count);
+    }
+    String list = bytes.toString();
+    String separator = (list.indexOf('\0') >= 0) ? "\0" : "\r?\n";
+    for (String name : list.split(separator)) {
+      if (!name.equals("")) addInput(name);
+    }
+  }
+
+  private static boolean isGlob(String name) {
+    for (int i = 0; i < name.length(); i++) {
+      if ("*?[{".indexOf(name.charAt(i)) >= 0) return true;
+    }
+    return false;
+  }
+
+  private void addTree(Path root, Pattern names, String input) throws IOException {
+    int matched = 0;
+    Iterator<Path> i = Files.walk(root).sorted().iterator();
+    while (i.hasNext()) {
+      Path p = i.next();
+      if (names.matcher(p.getFileName().toString()).matches() && Files.isRegularFile(p)) {
+        add(p.toFile(), root.relativize(p).toString());
+        matched++;
+      }
+    }
+    if (matched == 0) unmatched.add(input);
+  }
+
+  private void add(File file, String relativeName) throws IOException {
+    if (!seen.add(file.getCanonicalPath())) return;
+    File base = new File(targetDirectory.equals("") ? "." : targetDirectory);
+    jobs.add(new Job(file, new File(base, relativeName)));
+  }
+
+  /**
+   * Converts every file that has been added, and prints a summary.
+   *
+   * @param out where to print the summary
+   * @return whether every input was found and every file converted
+   */
+  public boolean run(PrintStream out) {
+    long start = System.currentTimeMillis();
+
+    // two fonts must not write into the same directory
+    HashMap<File,Job> outputs = new HashMap<File,Job>();
+    ArrayList<Job> order = new ArrayList<Job>();
+    for (Job job : jobs) {
+      Job other = outputs.put(job.outputDirectory, job);
+      if (other != null) {
+        job.messages = "! " + job.outputDirectory + " is also the directory for " + other.file + "\n";
+        outputs.put(job.outputDirectory, other);
+      }
+      else order.add(job);
+    }
+
+    // biggest first
+    Collections.sort(order, new Comparator<Job>() {
+        public int compare(Job a, Job b) {
+          return Long.compare(b.size, a.size);
+        }
+      });
+
+    // in async mode each worker takes its own tasks in the order
+    // they were submitted, just as thieves do
+    ForkJoinPool pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    ArrayList<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+    for (Job job : order) {
+      tasks.add(pool.submit(job));
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+    pool.shutdown();
+
+    int converted = 0;
+    int characters = 0;
+    for (Job job : jobs) {
+      if (job.ok) converted++;
+      characters = characters + job.characters;
+    }
+    double seconds = (System.currentTimeMillis() - start) / 1000.0;
+
+    for (String input : unmatched) {
+      out.println("! no GF files found for " + input);
+    }
+    for (Job job : jobs) {
+      if (job.ok) continue;
+      out.println("! failed: " + job.file);
+      BufferedReader r = new BufferedReader(new StringReader(job.messages));
+      try {
+        String line;
+        while ((line = r.readLine()) != null) {
+          if (!line.trim().equals("")) out.println("    " + line);
+        }
+      }
+      catch (IOException ioe) {
+        ioe.printStackTrace();
+      }
+    }
+    out.println("Converted " + converted + " of " + jobs.size() + " file" +
+                ((jobs.size() != 1) ? "s" : "") + " (" + characters + " character" +
+                ((characters != 1) ? "s" : "") + ") in " + seconds + " seconds" +
+                " using " + threads + " thread" + ((threads != 1) ? "s" : "") + ".");
+    return (converted == jobs.size()) && unmatched.isEmpty();
+  }
+
+}
@@ -28,9 +28,7 @@ package com.slurm.gf;
 import java.io.*;
 import java.awt.*;
 import java.awt.image.*;
-import java.util.Arrays;
-
-import javax.imageio.ImageIO;
+import java.util.ArrayList;
 
 /**
  * Set of callback functions to create GIF images of characters
@@ -38,7 +36,7 @@ import javax.imageio.ImageIO;
  *
  * @author Richard Blaylock
  */
-public class GF2GIFCallback extends GFParserCallback {
+public class GF2GIFCallback implements GFRowCallback, GFSelectiveCallback {
 
   int m, n;
   int paintSwitch;
@@ -49,20 +47,157 @@ public class GF2GIFCallback extends GFParserCallback {
 
   IndexColorModel colorModel;
 
+  /**
+   * Turns the pixels of each character into a GIF image.
+   */
+  GIFEncoder encoder;
+
   int width;
   int height;
   int minM, maxM, minN, maxN;
   int minHeight;
   int maxHeight;
-  int adjustedMinHeight;
-  int adjustedMaxHeight;
 
-  int pixels[];
+  /**
+   * The pixels of the current character, reused from one character
+   * to the next.
+   */
+  GlyphBitmap bitmap = new GlyphBitmap();
 
   int characterCode;
   MemoryImageSource mis;
   String filePrefix;
 
+  /**
+   * Where progress and error messages are printed.
+   */
+  PrintStream out = System.out;
+
+  /**
+   * Whether to print the code of each character as it is reached.
+   */
+  boolean showProgress = true;
+
+  /**
+   * Whether to end the program when a GIF file cannot be created.
+   */
+  boolean exitOnWriteFailure = true;
+
+  /**
+   * The number of GIF files that could not be written.
+   */
+  int failedWrites;
+
+  /**
+   * Whether the file has been found to be bad.
+   */
+  boolean badFile;
+
+  /**
+   * Whether the post command has been reached.
+   */
+  boolean postReached;
+
+  /**
+   * Whether to hold characters back until the postamble supplies
+   * the row bounds.
+   */
+  boolean heightsFromPostamble;
+
+  /**
+   * The default limit on the bytes of pixels held back for the
+   * postamble: 64 megabytes.
+   */
+  public static final long HOLD_LIMIT = 64L << 20;
+
+  /**
+   * The most bytes of pixels that may be held back for the postamble,
+   * the bytes held back so far, and whether the limit has been passed.
+   */
+  long holdLimit = HOLD_LIMIT;
+  long held;
+  boolean holdExceeded;
+
+  /**
+   * Whether to encode each row of a character as soon as it has been
+   * painted, instead of painting the whole character first.
+   */
+  boolean scanlineRendering;
+
+  /**
+   * Whether the current character is being rendered a row at a time,
+   * in which case bitmap holds just the row being painted.
+   */
+  boolean scanning;
+
+  /**
+   * When scanning, the row being painted.
+   */
+  int scanRow;
+
+  /**
+   * The number of runs painted, and of black pixels among them, in
+   * the current character.
+   */
+  int runs;
+  long pixels;
+
+  /**
+   * The Flight Recorder event timing the current character, or null
+   * if such events are not being recorded.
+   */
+  CharacterEvent characterEvent;
+
+  /**
+   * When the current character's boc was reached, in System.nanoTime
+   * terms.
+   */
+  long characterStart;
+
+  /**
+   * Where the GIF files go.
+   */
+  GlyphSink sink = new FileSink();
+
+  /**
+   * Where to record each character written, or null.
+   */
+  GlyphManifest.Font manifest;
+
+  /**
+   * The time spent on the current character so far, and the bytes
+   * allocated, which are only counted for the manifest.
+   */
+  long spentNanos;
+  long spentBytes;
+
+  /**
+   * Characters waiting for the postamble.
+   */
+  ArrayList<PendingGlyph> pending = new ArrayList<PendingGlyph>();
+
+  /**
+   * A character that has been painted but not yet written out.
+   */
+  static class PendingGlyph {
+    int characterCode;
+    GlyphBitmap bitmap;
+    int minM, maxM, minN, maxN;
+    int runs;
+    long pixels;
+    long spentNanos;
+    long spentBytes;
+
+    PendingGlyph(int characterCode, GlyphBitmap bitmap, int minM, int maxM, int minN, int maxN) {
+      this.characterCode = characterCode;
+      this.bitmap = bitmap;
+      this.minM = minM;
+      this.maxM = maxM;
+      this.minN = minN;
+      this.maxN = maxN;
+    }
+  }
+
   /**
    * Creates a new GF2GIFCallback.
    *
@@ -88,27 +223,44 @@ public class GF2GIFCallback extends GFParserCallback {
       width = 0;
       height = 0;
 
+      colorModel = makeColorModel(foreground, background, hasTransparent, transparentBackground);
+      encoder = new GIFEncoder(colorModel);
+
+      this.minHeight = minHeight;
+      this.maxHeight = maxHeight;
+
+      this.filePrefix = makeFilePrefix(filePrefix, targetDirectory);
+  }
+
+  /**
+   * @return the two-entry color model for images with the given colors,
+   * background first.
+   */
+  static IndexColorModel makeColorModel(Color foreground, Color background, boolean hasTransparent, boolean transparentBackground) {
       byte[] redMap = {(byte) (background.getRed()), (byte) (foreground.getRed())};
       byte[] greenMap = {(byte) (background.getGreen()), (byte) (foreground.getGreen())};
       byte[] blueMap = {(byte) (background.getBlue()), (byte) (foreground.getBlue())};
 
       if (hasTransparent) {
           if (transparentBackground) {
-              colorModel = new IndexColorModel(1, 2, redMap, greenMap, blueMap, 0);
+              return new IndexColorModel(1, 2, redMap, greenMap, blueMap, 0);
           } else {
-              colorModel = new IndexColorModel(1, 2, redMap, greenMap, blueMap, 1);
+              return new IndexColorModel(1, 2, redMap, greenMap, blueMap, 1);
           }
       } else {
-          colorModel = new IndexColorModel(1, 2, redMap, greenMap, blueMap);
+          return new IndexColorModel(1, 2, redMap, greenMap, blueMap);
       }
+  }
 
-      this.minHeight = minHeight;
-      this.maxHeight = maxHeight;
-
+  /**
+   * @return the path, less the character code and ".gif", of the GIF
+   * files in the given directory
+   */
+  static String makeFilePrefix(String filePrefix, String targetDirectory) {
       if (!targetDirectory.equals("")) {
-          this.filePrefix = targetDirectory + File.separatorChar + filePrefix;
+          return targetDirectory + File.separatorChar + filePrefix;
       } else {
-          this.filePrefix = filePrefix;
+          return filePrefix;
       }
   }
 
@@ -132,6 +284,95 @@ public class GF2GIFCallback extends GFParserCallback {
     this(Color.black, Color.white);
   }
 
+  /**
+   * Holds every character back until the post command is reached, and
+   * then uses its min_n and max_n as the row bounds, as if they had
+   * been passed to the constructor.  This is for sources, such as
+   * streams, whose postamble cannot be read ahead of time.
+   *
+   * @param b whether to wait for the postamble
+   */
+  public void setHeightsFromPostamble(boolean b) {
+    heightsFromPostamble = b;
+  }
+
+  /**
+   * Limits the pixels held back while waiting for the postamble, which
+   * otherwise grow with the font.  Once the limit is passed the
+   * characters held so far are dropped, no more are kept, and the
+   * conversion is reported as incomplete.
+   *
+   * @param bytes the most bytes of pixels to hold, HOLD_LIMIT by default
+   */
+  public void setHoldLimit(long bytes) {
+    holdLimit = bytes;
+  }
+
+  /**
+   * Encodes each row of a character as soon as the parser has moved
+   * past it, so that only one row of pixels is ever held in memory.
+   * The images are the same as those made by painting each character
+   * in full.  This has no effect while waiting for the postamble,
+   * since the height of the images is not known until then.
+   *
+   * @param b whether to render a row at a time
+   */
+  public void setScanlineRendering(boolean b) {
+    scanlineRendering = b;
+  }
+
+  /**
+   * Prints progress and error messages to the given stream instead
+   * of standard output.
+   */
+  public void setOutput(PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Chooses whether to print the code of each character as it is
+   * reached, which is only useful when characters are reached in order.
+   */
+  public void setShowProgress(boolean b) {
+    showProgress = b;
+  }
+
+  /**
+   * Chooses whether failing to create a GIF file ends the program, as
+   * it does by default, or is merely counted, so that one bad font
+   * need not stop the conversion of others.
+   *
+   * @param b whether to exit when a file cannot be created
+   */
+  public void setExitOnWriteFailure(boolean b) {
+    exitOnWriteFailure = b;
+  }
+
+  /**
+   * Puts the GIF files in the given sink, instead of writing each to
+   * a file of its own.
+   */
+  public void setSink(GlyphSink sink) {
+    this.sink = sink;
+  }
+
+  /**
+   * Records every character written in the given manifest.  If the
+   * manifest does not already have the font's char_locs, they are
+   * passed to it as they are parsed.
+   */
+  public void setManifest(GlyphManifest.Font manifest) {
+    this.manifest = manifest;
+  }
+
+  /**
+   * @return whether the whole file was parsed without being found bad,
+   * and every GIF file was written.
+   */
+  public boolean isComplete() {
+    return postReached && !badFile && (failedWrites == 0) && !holdExceeded;
+  }
+
   /**
    * @return the total number of characters encountered in the GF file.
    */
@@ -139,161 +380,388 @@ public class GF2GIFCallback extends GFParserCallback {
     return totalChars;
   }
 
+  /**
+   * Specials, no_ops and char_locs make no difference to the images,
+   * but the manifest may need the char_locs.
+   */
+  public int getInterests() {
+    if ((manifest != null) && !manifest.finished) return WANTS_CHAR_LOC;
+    return 0;
+  }
+
   public void badGF(String msg) throws GFFileFormatException {
-    System.out.println(" Bad GF file: " + msg + "!");
+    badFile = true;
+    out.println(" Bad GF file: " + msg + "!");
     throw new GFFileFormatException();
   }
   
   public void error(int label, String s) {
-    System.out.println(label + ":" + s);
+    out.println(label + ":" + s);
   }
 
   public void startSpecialCommands(int loc) {
   }
 
-  public void handlePaintCommand(PaintCommand paint) {
-    int l, r, cursor;
-    int p = paint.getNumPixels();
-
+  public void paint(int p) {
     // advance m first
     m = m + p;
     // paint pixels m - p through m - 1
     // in row n of the subarray
+    runs++;
     if (paintSwitch == BLACK) {
-      l = m - p;
-      r = m - 1;
-      cursor = l;
-      while (cursor <= r) {
-        pixels[width * n + cursor] = BLACK;
-        cursor++;
+      pixels = pixels + p;
+      if (!scanning) bitmap.fillSpan(n, m - p, m);
+      else {
+        moveToRow(n);
+        if (scanRow < height) bitmap.fillSpan(0, m - p, m);
       }
     }
     paintSwitch = 1 - paintSwitch;
   }
 
-  public void handleBOCCommand(BOCCommand boc) {
-    characterCode = boc.getCharacterCode();
-    System.out.print("[" + characterCode + "]");
+  /**
+   * Fills in the black runs of a whole row at a time.
+   */
+  public void paintRow(int row, int column, boolean black, int[] runs, int count) {
+    int target = row;
+    if (scanning) {
+      moveToRow(row);
+      // painting past the bottom of the character does nothing
+      target = (scanRow < height) ? 0 : -1;
+    }
+    int cursor = column;
+    this.runs = this.runs + count;
+    for (int i = 0; i < count; i++) {
+      int p = runs[i];
+      if (black) {
+        bitmap.fillSpan(target, cursor, cursor + p);
+        pixels = pixels + p;
+      }
+      cursor = cursor + p;
+      black = !black;
+    }
+    m = cursor;
+    n = row;
+    paintSwitch = black ? BLACK : WHITE;
+  }
+
+  public void boc(int location, int code, int previousPointer,
+                  int minM, int maxM, int minN, int maxN) {
+    characterCode = code;
+    if (showProgress) out.print("[" + characterCode + "]");
     totalChars++;
 
+    runs = 0;
+    pixels = 0;
+    characterStart = System.nanoTime();
+    spentNanos = 0;
+    spentBytes = (manifest != null) ? -GlyphManifest.allocatedBytes() : 0;
+    CharacterEvent event = new CharacterEvent();
+    if (event.isEnabled()) {
+      event.begin();
+      characterEvent = event;
+    }
+
     m = 0;
     n = 0;
     paintSwitch = WHITE;
 
-    minM = boc.getMinM();
-    maxM = boc.getMaxM();
-    minN = boc.getMinN();
-    maxN = boc.getMaxN();
-    adjustedMinHeight = minHeight;
-    if (adjustedMinHeight > minN) adjustedMinHeight = minN;
-    adjustedMaxHeight = maxHeight;
-    if (adjustedMaxHeight < maxN) adjustedMaxHeight = maxN;
+    this.minM = minM;
+    this.maxM = maxM;
+    this.minN = minN;
+    this.maxN = maxN;
 
     width = (maxM - minM) + 1;
     height = (maxN - minN) + 1;
 
-    pixels = new int[width * height];
+    scanning = scanlineRendering && !heightsFromPostamble;
+    if (scanning) {
+      bitmap.reset(width, 1);
+      scanRow = 0;
+      encoder.startImage(width, imageHeight(minN, maxN));
+      encoder.writeBlankRows(imageTop(maxN));
+    }
+    else {
+      bitmap.reset(width, height);
+    }
+  }
 
-    // clear the array
-    for (int i = 0; i < width * height; i++) {
-      pixels[i] = WHITE;
+  /**
+   * When scanning, encodes the row being painted and any blank rows
+   * that lie between it and the given row, which becomes the row
+   * being painted.
+   */
+  void moveToRow(int row) {
+    if (row <= scanRow) return;
+    if (scanRow < height) {
+      encoder.writeRow(bitmap.getWords(), 0);
+      encoder.writeBlankRows(Math.min(row, height) - scanRow - 1);
+      bitmap.reset(width, 1);
     }
+    scanRow = row;
   }
 
-  public void handleEOCCommand(EOCCommand eoc) {
+  public void eoc(int location) {
+    if (scanning) {
+      moveToRow(height);
+      encoder.writeBlankRows(imageHeight(minN, maxN) - imageTop(maxN) - height);
+      encoder.finishImage();
+      endCharacter(encoder.size());
+      writeFile(characterCode);
+    }
+    else if (heightsFromPostamble) {
+      endCharacter(0);
+      if (holdExceeded) return;
+      long size = 8L * bitmap.getWordsPerRow() * bitmap.getHeight();
+      if (held + size > holdLimit) {
+        out.println("! more than " + holdLimit + " bytes of characters held back for the postamble;"
+                    + " give -rows or -tight to convert this font from a stream");
+        holdExceeded = true;
+        pending.clear();
+        held = 0;
+        return;
+      }
+      held = held + size;
+      PendingGlyph g = new PendingGlyph(characterCode, bitmap.copy(), minM, maxM, minN, maxN);
+      g.runs = runs;
+      g.pixels = pixels;
+      g.spentNanos = spentNanos;
+      g.spentBytes = spentBytes;
+      pending.add(g);
+    }
+    else {
+      endCharacter(0);
+      writeGIF(characterCode, bitmap, minN, maxN);
+    }
+  }
 
-    int[] extendedPixels = pixels;
-    int extendedHeight = height;
+  /**
+   * Records the time taken by the current character, and ends the
+   * event timing it, if there is one.
+   *
+   * @param bytes the size of its GIF image, if it has been encoded
+   */
+  void endCharacter(int bytes) {
+    long nanos = System.nanoTime() - characterStart;
+    ConversionMetrics.CHARACTER.observe(nanos);
+    spentNanos = spentNanos + nanos;
+    if (manifest != null) spentBytes = spentBytes + GlyphManifest.allocatedBytes();
+    CharacterEvent event = characterEvent;
+    if (event == null) return;
+    characterEvent = null;
+    event.end();
+    if (event.shouldCommit()) {
+      describe(event, bytes);
+      event.commit();
+    }
+  }
 
-    try {
+  /**
+   * Fills in an event with the current character.
+   */
+  void describe(GlyphEvent event, int bytes) {
+    event.setCharacter(characterCode, minM, maxM, minN, maxN);
+    event.runs = runs;
+    event.pixels = pixels;
+    event.bytes = bytes;
+  }
 
-      if ((adjustedMinHeight != minN) || (adjustedMaxHeight != maxN)) {
-        extendedHeight = (adjustedMaxHeight - adjustedMinHeight) + 1;
-        extendedPixels = new int[width * extendedHeight];
-        int i;
-        for (i = 0; i < width * extendedHeight; i++) {
-          extendedPixels[i] = WHITE;
-        }
-        int offset = (adjustedMaxHeight - maxN) * width;
-
-        // copy pixels into extended array
-        for (i = 0; i < width * height; i++) {
-          extendedPixels[i + offset] = pixels[i];
-        }
-      }
+  /**
+   * Writes the GIF image of a single character, extending it to the
+   * row bounds given at construction time.
+   */
+  void writeGIF(int characterCode, GlyphBitmap glyph, int minN, int maxN) {
+    EncodeEvent event = new EncodeEvent();
+    event.begin();
+    long start = System.nanoTime();
+    if (manifest != null) spentBytes = spentBytes - GlyphManifest.allocatedBytes();
+    encoder.encode(glyph, imageTop(maxN), imageHeight(minN, maxN));
+    long nanos = System.nanoTime() - start;
+    ConversionMetrics.ENCODE.observe(nanos);
+    spentNanos = spentNanos + nanos;
+    if (manifest != null) spentBytes = spentBytes + GlyphManifest.allocatedBytes();
+    event.end();
+    if (event.shouldCommit()) {
+      describe(event, encoder.size());
+      event.commit();
+    }
+    writeFile(characterCode);
+  }
+
+  /**
+   * @return the height of the image of a character with the given
+   * row bounds, once it has been extended to the row bounds given at
+   * construction time
+   */
+  int imageHeight(int minN, int maxN) {
+    return imageHeight(minHeight, maxHeight, minN, maxN);
+  }
+
+  /**
+   * @return the height of the image of a character with the given
+   * row bounds, once it has been extended to the given row bounds for
+   * every character
+   */
+  static int imageHeight(int minHeight, int maxHeight, int minN, int maxN) {
+    int adjustedMinHeight = minHeight;
+    if (adjustedMinHeight > minN) adjustedMinHeight = minN;
+    int adjustedMaxHeight = maxHeight;
+    if (adjustedMaxHeight < maxN) adjustedMaxHeight = maxN;
+    return (adjustedMaxHeight - adjustedMinHeight) + 1;
+  }
 
-        BufferedImage bufferedImage = new BufferedImage(width, extendedHeight, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+  /**
+   * @return the number of blank rows above a character whose top row
+   * is maxN
+   */
+  int imageTop(int maxN) {
+    return imageTop(maxHeight, maxN);
+  }
 
-        WritableRaster writableRaster = bufferedImage.getRaster();
+  /**
+   * @return the number of blank rows above a character whose top row
+   * is maxN, when every character reaches at least row maxHeight
+   */
+  static int imageTop(int maxHeight, int maxN) {
+    int adjustedMaxHeight = maxHeight;
+    if (adjustedMaxHeight < maxN) adjustedMaxHeight = maxN;
+    return adjustedMaxHeight - maxN;
+  }
 
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < extendedHeight; y++) {
-                int[] fill = new int[1]; // A large block...
-                Arrays.fill(fill, extendedPixels[(y * width) + x]);  // ..  filled with one of the 7 first colors in the LUT.
-                writableRaster.setSamples(x, y, 1, 1, 0, fill);
-            }
-        }
+  /**
+   * Writes the image most recently encoded to the GIF file for the
+   * given character.
+   */
+  void writeFile(int characterCode) {
+    WriteEvent event = new WriteEvent();
+    event.begin();
+    long start = System.nanoTime();
+    if (manifest != null) spentBytes = spentBytes - GlyphManifest.allocatedBytes();
+    boolean written = writeEncoded(filePrefix + characterCode + ".gif");
+    if (written) ConversionMetrics.GLYPHS.inc();
+    long nanos = System.nanoTime() - start;
+    ConversionMetrics.WRITE.observe(nanos);
+    event.end();
+    if (event.shouldCommit()) {
+      describe(event, encoder.size());
+      event.commit();
+    }
+    if (written && (manifest != null)) {
+      spentNanos = spentNanos + nanos;
+      spentBytes = spentBytes + GlyphManifest.allocatedBytes();
+      manifest.record(characterCode, filePrefix + characterCode + ".gif",
+                      width, imageHeight(minN, maxN), -minM, imageTop(maxN) + maxN + 1,
+                      encoder.size(), spentNanos, spentBytes);
+    }
+  }
 
-      ImageIO.write(bufferedImage, "gif", new File(filePrefix + characterCode + ".gif"));
+  /**
+   * Writes the image most recently encoded to the named file.
+   *
+   * @return whether it was written
+   */
+  boolean writeEncoded(String name) {
+    if (writeBytes(name, encoder.getBuffer(), encoder.size())) {
+      ConversionMetrics.OUTPUT_BYTES.add(encoder.size());
+      return true;
+    }
+    return false;
+  }
 
+  /**
+   * Writes the first length bytes of the given array to the sink,
+   * under the given name.
+   *
+   * @return whether they were written
+   */
+  boolean writeBytes(String name, byte[] bytes, int length) {
+    try {
+      sink.write(name, bytes, 0, length);
+      return true;
     }
     catch (FileNotFoundException fnfe) {
-      System.out.println("! could not create file " + filePrefix + characterCode + ".gif");
-      System.exit(0);
+      out.println("! could not create file " + name);
+      ConversionMetrics.WRITE_FAILURES.inc();
+      if (exitOnWriteFailure) System.exit(0);
+      failedWrites++;
     }
     catch (IOException ioe) {
-      ioe.printStackTrace();
+      ioe.printStackTrace(out);
+      ConversionMetrics.WRITE_FAILURES.inc();
+      failedWrites++;
     }
+    return false;
   }
 
-  public void handleSkipCommand(SkipCommand skip) {
+  public void skip(int location, int opcode, int rows) {
     // translate a SKIP command
-    int p = skip.getRows() - 1;
+    int p = rows - 1;
     n = n + p + 1;
     m = 0;
     paintSwitch = WHITE;
   }
 
-  public void handleNewRowCommand(NewRowCommand newrow) {
+  public void newRow(int location, int p) {
     // translate a NEW_ROW command
-    int p = newrow.getOffset();
-    p = newrow.getOpCode() - Command.NEW_ROW_0;
     n++;
     m = p;
     paintSwitch = BLACK;
   }
 
-  public void handleXXXCommand(XXXCommand xxx) {
+  public void xxx(int location, int[] bytes, int length) {
   }
 
-  public void handleYYYCommand(YYYCommand c) {
+  public void yyy(int location, int value) {
   }
 
-  public void handleNoOpCommand(NoOpCommand c) {
+  public void noOp(int location) {
   }
 
-  public void handleCharLocCommand(CharLocCommand c) {
+  public void charLoc(int location, int residue, int dx, int dy,
+                      int width, int pointer) {
+    if (manifest != null) manifest.charLoc(residue, dx, width);
   }
 
-  public void handlePreCommand(PreCommand c) {
-    int[] commentBytes = c.getCommentBytes();
-    int len = commentBytes.length;
+  public void pre(int location, int id, int[] commentBytes, int len) {
     StringBuffer csBuffer = new StringBuffer(len);
     int i;
     for (i = 0; i < len; i++) {
       csBuffer.append((char)commentBytes[i]);
     }
-    System.out.println("'" + csBuffer.toString() + "'");
+    out.println("'" + csBuffer.toString() + "'");
   }
 
-  public void handlePostCommand(PostCommand c) {
-    System.out.println();
+  public void post(int location, int specialPointer, int designSize, int checkSum,
+                   int hppp, int vppp, int minM, int maxM, int minN, int maxN) {
+    postReached = true;
+    out.println();
+    if (heightsFromPostamble) {
+      minHeight = minN;
+      maxHeight = maxN;
+      for (PendingGlyph g : pending) {
+        // the character is the current one again while it is written
+        characterCode = g.characterCode;
+        this.minM = g.minM;
+        this.maxM = g.maxM;
+        this.minN = g.minN;
+        this.maxN = g.maxN;
+        runs = g.runs;
+        pixels = g.pixels;
+        spentNanos = g.spentNanos;
+        spentBytes = g.spentBytes;
+        width = (g.maxM - g.minM) + 1;
+        writeGIF(g.characterCode, g.bitmap, g.minN, g.maxN);
+      }
+      pending.clear();
+      held = 0;
+    }
   }
 
-  public void handlePostPostCommand(PostPostCommand c) {
+  public void postPost(int location, int postLoc) {
+    if (manifest != null) manifest.finish();
   }
 
-  public void handleUndefinedCommand(UndefinedCommand c) {
+  public void undefined(int location, int opcode) {
   }
 
 }
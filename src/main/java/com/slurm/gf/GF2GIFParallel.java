@@ -0,0 +1,222 @@
+// GF2GIFParallel.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts the characters of a single generic font file on several
+ * threads at once.
+ * <p>
+ * The char_loc commands of the postamble, together with the back
+ * pointers of the boc commands, give the location of every character
+ * in the file.  The file is mapped once, and each worker thread has a
+ * duplicate of it, a parser and a GF2GIFCallback of its own, and
+ * takes characters one at a time, largest first, until there are none
+ * left.  The GIF files are the
+ * same as those written by parsing the file from beginning to end: a
+ * code that occurs more than once is only rendered at its last
+ * occurrence, whose image is the one a sequential run leaves behind.
+ *
+ * @author Richard Blaylock
+ * @see GF2GIFs
+ * @see GFSource#getCharacterPointers
+ */
+public class GF2GIFParallel {
+
+  GF2GIFs converter;
+  String gfFileName;
+  String targetDirectory;
+  int threads;
+
+  /** the file, which each worker duplicates */
+  GFFile gfFile;
+
+  /** the boc commands of the characters to render, largest first */
+  long[] work;
+
+  /** the index in work of the next character to render */
+  AtomicInteger next = new AtomicInteger();
+
+  /** whether every worker rendered and wrote all its characters */
+  boolean complete;
+
+  /**
+   * Renders characters until there are none left, and says whether
+   * it rendered and wrote all of them.
+   */
+  class Worker implements Callable<Boolean> {
+    public Boolean call() throws GFFileFormatException {
+      GFFile gfInputFile = gfFile.duplicate();
+      try {
+        GF2GIFCallback callback = converter.createCallback(gfInputFile, false, targetDirectory);
+        callback.setShowProgress(false);
+        GFParser parser = new GFParser(gfInputFile, callback);
+        int i;
+        while ((i = next.getAndIncrement()) < work.length) {
+          parser.parseCharacter(work[i]);
+        }
+        return Boolean.valueOf(!callback.badFile && (callback.failedWrites == 0));
+      }
+      finally {
+        gfInputFile.close();
+      }
+    }
+  }
+
+  /**
+   * @param converter the options to convert the file with
+   * @param gfFileName the name of the file
+   * @param targetDirectory the directory in which to put the GIF files
+   * @param threads the number of characters to render at once
+   */
+  public GF2GIFParallel(GF2GIFs converter, String gfFileName, String targetDirectory, int threads) {
+    this.converter = converter;
+    this.gfFileName = gfFileName;
+    this.targetDirectory = targetDirectory;
+    this.threads = threads;
+  }
+
+  /**
+   * Converts every character of the file, printing the preamble's
+   * comment and the character codes just as a sequential run does.
+   *
+   * @param out where to print
+   * @return the number of characters in the file
+   */
+  public int convert(PrintStream out) throws FileNotFoundException, GFFileFormatException {
+    gfFile = new GFFile(gfFileName);
+    GFFile gfInputFile = gfFile.duplicate();
+    long[] pointers;
+    try {
+      CommandCursor c = new CommandCursor();
+      if (gfInputFile.readCommand(c) != Command.PRE) {
+        throw new GFFileFormatException("First byte isn't start of preamble!");
+      }
+      int[] comment = c.getBytes();
+      StringBuffer csBuffer = new StringBuffer(c.getByteCount());
+      for (int i = 0; i < c.getByteCount(); i++) {
+        csBuffer.append((char)comment[i]);
+      }
+      out.println("'" + csBuffer.toString() + "'");
+      ConversionMetrics.BYTES_READ.add(gfInputFile.getFilePointer());
+      ConversionMetrics.recordCommands(c);
+
+      pointers = gfInputFile.getCharacterPointers();
+      recordPostamble(gfInputFile);
+
+      // the last character with each code, with its area
+      HashMap<Integer,Integer> last = new HashMap<Integer,Integer>();
+      final long[] areas = new long[pointers.length];
+      for (int i = 0; i < pointers.length; i++) {
+        gfInputFile.seek(pointers[i]);
+        gfInputFile.readCommand(c);
+        out.print("[" + c.getCharacterCode() + "]");
+        last.put(Integer.valueOf(c.getCharacterCode()), Integer.valueOf(i));
+        areas[i] = (long)(c.getMaxM() - c.getMinM() + 1) * (c.getMaxN() - c.getMinN() + 1);
+      }
+      out.println();
+
+      Integer[] order = last.values().toArray(new Integer[0]);
+      Arrays.sort(order, new Comparator<Integer>() {
+          public int compare(Integer a, Integer b) {
+            return Long.compare(areas[b.intValue()], areas[a.intValue()]);
+          }
+        });
+      work = new long[order.length];
+      for (int i = 0; i < order.length; i++) {
+        work[i] = pointers[order[i].intValue()];
+      }
+    }
+    catch (IOException ioe) {
+      ioe.printStackTrace();
+      return 0;
+    }
+    finally {
+      gfInputFile.close();
+    }
+
+    next.set(0);
+    ArrayList<Worker> workers = new ArrayList<Worker>();
+    for (int i = 0; i < Math.min(threads, work.length); i++) {
+      workers.add(new Worker());
+    }
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      complete = true;
+      for (Future<Boolean> f : pool.invokeAll(workers)) {
+        if (!f.get().booleanValue()) complete = false;
+      }
+    }
+    catch (InterruptedException ie) {
+      complete = false;
+      ie.printStackTrace();
+    }
+    catch (ExecutionException ee) {
+      complete = false;
+      if (ee.getCause() instanceof GFFileFormatException) {
+        throw (GFFileFormatException)ee.getCause();
+      }
+      ee.printStackTrace();
+    }
+    finally {
+      pool.shutdown();
+    }
+    return pointers.length;
+  }
+
+  /**
+   * Counts the postamble in the metrics, as a sequential parse would,
+   * since the workers never reach it.  Specials and no_ops between
+   * characters, and characters whose code occurs again later, are
+   * never read at all, so for fonts that have any the totals fall
+   * short of a sequential run's by those bytes and commands.
+   */
+  private void recordPostamble(GFFile gfInputFile) throws GFFileFormatException, IOException {
+    int postLoc = gfInputFile.findPostLoc();
+    gfInputFile.seek(postLoc);
+    CommandCursor c = new CommandCursor();
+    int o;
+    do {
+      o = gfInputFile.readCommand(c);
+    } while ((o == Command.POST) || (o == Command.CHAR_LOC) || (o == Command.CHAR_LOC0) ||
+             (o == Command.NO_OP));
+    ConversionMetrics.BYTES_READ.add(gfInputFile.length() - postLoc);
+    ConversionMetrics.recordCommands(c);
+  }
+
+  /**
+   * @return whether the last conversion rendered every character and
+   * wrote every GIF file
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+}
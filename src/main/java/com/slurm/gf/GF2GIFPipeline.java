@@ -0,0 +1,719 @@
+// GF2GIFPipeline.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.io.*;
+import java.awt.image.IndexColorModel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Converts a generic font into GIF images in four stages, each with
+ * threads of its own, joined by bounded queues:<ul>
+ * <li>parse: the GF commands are decoded, and the paint commands of
+ * each character are recorded as runs (always one thread, since the
+ * commands must be read in order)</li>
+ * <li>rasterize: the runs are painted into a GlyphBitmap</li>
+ * <li>encode: the bitmap is encoded as a GIF image</li>
+ * <li>write: the image is written to its file</li></ul>
+ * A full queue holds up only the stage that feeds it, so a slow disk
+ * no longer stalls decoding until the queues between them fill up.
+ * The number of characters each stage handled and the time it spent
+ * on them are printed at the end.  The files written are the same as
+ * those written by GF2GIFCallback.
+ *
+ * @author Richard Blaylock
+ * @see GF2GIFs
+ */
+public class GF2GIFPipeline {
+
+  /** the default number of characters each queue can hold */
+  static final int QUEUE_SIZE = 64;
+
+  GF2GIFs converter;
+  String filePrefix;
+  IndexColorModel colorModel;
+  int minHeight, maxHeight;
+
+  /** the number of characters the parse stage has found */
+  int totalChars;
+
+  int rasterizers, encoders, writers;
+  int queueSize = QUEUE_SIZE;
+
+  /**
+   * bitmaps that have been encoded, ready to be used again; made by
+   * convert big enough for every bitmap that can be in use at once
+   */
+  BlockingQueue<GlyphBitmap> freeBitmaps;
+
+  /** one encoder for each thread of the encode stage */
+  ThreadLocal<GIFEncoder> gifEncoders = new ThreadLocal<GIFEncoder>() {
+      protected GIFEncoder initialValue() {
+        return new GIFEncoder(colorModel);
+      }
+    };
+
+  /**
+   * for each character code, the sequence number of the last character
+   * written with that code, so that when a code occurs more than once
+   * it is the last occurrence whose file survives
+   */
+  ConcurrentHashMap<Integer,Integer> written = new ConcurrentHashMap<Integer,Integer>();
+  Object[] writeLocks = new Object[64];
+
+  /** the number of files that could not be written */
+  AtomicInteger failedWrites = new AtomicInteger();
+
+  /** the number of characters a stage failed on */
+  AtomicInteger failures = new AtomicInteger();
+
+  /** whether the whole file was parsed without being found bad */
+  boolean parseComplete;
+
+  /** where to record each character written, or null */
+  GlyphManifest.Font manifest;
+
+  /** where the GIF files go */
+  GlyphSink sink;
+
+  /** Marks the end of the characters in a queue. */
+  static final Glyph END = new Glyph();
+
+  /**
+   * A character on its way through the stages.
+   */
+  static class Glyph {
+    int sequence;
+    int characterCode;
+    int minM, maxM, minN, maxN;
+
+    /**
+     * the paint commands, as groups of row, column, color (1 for
+     * black), number of runs, and the runs themselves
+     */
+    int[] runs = new int[64];
+    int runsLength;
+
+    /** the number of runs, and of black pixels among them */
+    int runCount;
+    long pixels;
+
+    GlyphBitmap bitmap;
+    byte[] gif;
+
+    /** whether its file was written */
+    boolean written;
+
+    /**
+     * the time spent on it by every stage, and the bytes allocated,
+     * which are only counted for the manifest
+     */
+    long spentNanos;
+    long spentBytes;
+  }
+
+  /**
+   * The work done by one stage, as reported at the end.
+   */
+  static class StageStats {
+    String name;
+    int threads;
+    AtomicLong items = new AtomicLong();
+    AtomicLong busyNanos = new AtomicLong();
+    AtomicLong bytes = new AtomicLong();
+
+    StageStats(String name, int threads) {
+      this.name = name;
+      this.threads = threads;
+    }
+  }
+
+  /**
+   * A stage of the pipeline: threads that take characters from one
+   * queue and, unless this is the last stage, put them in the next.
+   */
+  abstract class Stage extends StageStats implements Runnable {
+    BlockingQueue<Glyph> in;
+    BlockingQueue<Glyph> out;
+
+    AtomicInteger running = new AtomicInteger();
+    ArrayList<Thread> started = new ArrayList<Thread>();
+
+    /** where to record the time taken by each character, if anywhere */
+    MetricsRegistry.Histogram latency;
+
+    Stage(String name, int threads, BlockingQueue<Glyph> in, BlockingQueue<Glyph> out) {
+      super(name, threads);
+      this.in = in;
+      this.out = out;
+    }
+
+    abstract void process(Glyph g) throws IOException;
+
+    /**
+     * Called once the character has been processed and the time
+     * taken has been counted.
+     */
+    void finished(Glyph g) {
+    }
+
+    void start() {
+      running.set(threads);
+      for (int i = 0; i < threads; i++) {
+        Thread t = new Thread(this, name + "-" + i);
+        started.add(t);
+        t.start();
+      }
+    }
+
+    public void run() {
+      boolean stopped = true;
+      try {
+        while (true) {
+          Glyph g = in.take();
+          if (g == END) {
+            // let the other threads of this stage see it too
+            in.put(END);
+            break;
+          }
+          long start = System.nanoTime();
+          if (manifest != null) g.spentBytes = g.spentBytes - GlyphManifest.allocatedBytes();
+          try {
+            process(g);
+          }
+          catch (IOException ioe) {
+            ioe.printStackTrace();
+            failures.incrementAndGet();
+          }
+          catch (RuntimeException re) {
+            re.printStackTrace();
+            failures.incrementAndGet();
+          }
+          catch (Error e) {
+            // the character is lost, and so is this thread
+            failures.incrementAndGet();
+            throw e;
+          }
+          long nanos = System.nanoTime() - start;
+          busyNanos.addAndGet(nanos);
+          if (latency != null) latency.observe(nanos);
+          items.incrementAndGet();
+          g.spentNanos = g.spentNanos + nanos;
+          if (manifest != null) g.spentBytes = g.spentBytes + GlyphManifest.allocatedBytes();
+          finished(g);
+          if (out != null) out.put(g);
+        }
+        stopped = false;
+      }
+      catch (InterruptedException ie) {
+        ie.printStackTrace();
+      }
+      finally {
+        if (running.decrementAndGet() == 0) handOff(stopped);
+      }
+    }
+
+    /**
+     * Passes the end of the characters on to the next stage, once the
+     * last thread of this one is done.  If that thread stopped early,
+     * the characters still waiting are taken and counted as failures
+     * first, so that the stage before is not left waiting for room.
+     */
+    void handOff(boolean stopped) {
+      try {
+        if (stopped) {
+          Glyph g;
+          while ((g = in.take()) != END) {
+            if (g.bitmap != null) freeBitmaps.offer(g.bitmap);
+            failures.incrementAndGet();
+          }
+          in.put(END);
+        }
+        if (out != null) out.put(END);
+      }
+      catch (InterruptedException ie) {
+        ie.printStackTrace();
+      }
+    }
+
+    void join() throws InterruptedException {
+      for (Thread t : started) {
+        t.join();
+      }
+    }
+  }
+
+  /**
+   * The parse stage: records the characters and puts them in a queue.
+   */
+  class ParseCallback implements GFRowCallback, GFSelectiveCallback {
+    BlockingQueue<Glyph> out;
+    StageStats stats;
+    PrintStream log;
+    Glyph glyph;
+    long start;
+    CharacterEvent event;
+
+    /** whether to hold characters back until the postamble supplies the row bounds */
+    boolean waitForPostamble;
+    ArrayList<Glyph> pending = new ArrayList<Glyph>();
+
+    /**
+     * the bytes of runs held back for the postamble, and whether there
+     * were more than the converter's hold limit
+     */
+    long held;
+    boolean holdExceeded;
+
+    /** whether the file has been found bad, and whether post was reached */
+    boolean badFile;
+    boolean postReached;
+
+    public int getInterests() {
+      if ((manifest != null) && !manifest.finished) return GFSelectiveCallback.WANTS_CHAR_LOC;
+      return 0;
+    }
+
+    public void badGF(String msg) throws GFFileFormatException {
+      badFile = true;
+      log.println(" Bad GF file: " + msg + "!");
+      throw new GFFileFormatException();
+    }
+
+    public void error(int label, String s) {
+      log.println(label + ":" + s);
+    }
+
+    public void startSpecialCommands(int location) {
+    }
+
+    public void paint(int run) {
+      // the parser calls paintRow instead
+    }
+
+    public void paintRow(int row, int column, boolean black, int[] runs, int count) {
+      Glyph g = glyph;
+      int needed = g.runsLength + 4 + count;
+      if (needed > g.runs.length) g.runs = Arrays.copyOf(g.runs, Math.max(needed, 2 * g.runs.length));
+      int[] r = g.runs;
+      int k = g.runsLength;
+      r[k++] = row;
+      r[k++] = column;
+      r[k++] = black ? 1 : 0;
+      r[k++] = count;
+      System.arraycopy(runs, 0, r, k, count);
+      g.runsLength = k + count;
+      g.runCount = g.runCount + count;
+    }
+
+    public void boc(int location, int code, int previousPointer,
+                    int minM, int maxM, int minN, int maxN) {
+      start = System.nanoTime();
+      log.print("[" + code + "]");
+      glyph = new Glyph();
+      glyph.sequence = totalChars++;
+      glyph.characterCode = code;
+      glyph.minM = minM;
+      glyph.maxM = maxM;
+      glyph.minN = minN;
+      glyph.maxN = maxN;
+      if (manifest != null) glyph.spentBytes = -GlyphManifest.allocatedBytes();
+      CharacterEvent e = new CharacterEvent();
+      if (e.isEnabled()) {
+        e.begin();
+        event = e;
+      }
+    }
+
+    public void eoc(int location) {
+      long nanos = System.nanoTime() - start;
+      ConversionMetrics.CHARACTER.observe(nanos);
+      glyph.spentNanos = nanos;
+      if (manifest != null) glyph.spentBytes = glyph.spentBytes + GlyphManifest.allocatedBytes();
+      if (event != null) {
+        event.end();
+        if (event.shouldCommit()) {
+          describe(event, glyph);
+          event.commit();
+        }
+        event = null;
+      }
+      stats.busyNanos.addAndGet(System.nanoTime() - start);
+      stats.items.incrementAndGet();
+      if (waitForPostamble) hold(glyph);
+      else hand(glyph);
+      glyph = null;
+    }
+
+    /**
+     * Keeps a character until the postamble is reached, unless that
+     * would take more memory than the converter allows.
+     */
+    void hold(Glyph g) {
+      if (holdExceeded) return;
+      long size = 4L * g.runs.length;
+      if (held + size > converter.holdLimit) {
+        log.println("! more than " + converter.holdLimit + " bytes of characters held back for the postamble;"
+                    + " give -rows or -tight to convert this font from a stream");
+        holdExceeded = true;
+        pending.clear();
+        held = 0;
+        return;
+      }
+      held = held + size;
+      pending.add(g);
+    }
+
+    void hand(Glyph g) {
+      try {
+        out.put(g);
+      }
+      catch (InterruptedException ie) {
+        ie.printStackTrace();
+      }
+    }
+
+    public void skip(int location, int opcode, int rows) {
+    }
+
+    public void newRow(int location, int offset) {
+    }
+
+    public void xxx(int location, int[] bytes, int length) {
+    }
+
+    public void yyy(int location, int value) {
+    }
+
+    public void noOp(int location) {
+    }
+
+    public void charLoc(int location, int residue, int dx, int dy, int width, int pointer) {
+      if (manifest != null) manifest.charLoc(residue, dx, width);
+    }
+
+    public void pre(int location, int id, int[] comment, int length) {
+      StringBuffer csBuffer = new StringBuffer(length);
+      for (int i = 0; i < length; i++) {
+        csBuffer.append((char)comment[i]);
+      }
+      log.println("'" + csBuffer.toString() + "'");
+    }
+
+    public void post(int location, int specialPointer, int designSize, int checkSum,
+                     int hppp, int vppp, int minM, int maxM, int minN, int maxN) {
+      postReached = true;
+      log.println();
+      if (waitForPostamble) {
+        minHeight = minN;
+        maxHeight = maxN;
+        waitForPostamble = false;
+        for (Glyph g : pending) {
+          hand(g);
+        }
+        pending.clear();
+        held = 0;
+      }
+    }
+
+    public void postPost(int location, int postLoc) {
+      if (manifest != null) manifest.finish();
+    }
+
+    public void undefined(int location, int opcode) {
+    }
+  }
+
+  /**
+   * @param converter the options to convert the file with
+   * @param targetDirectory the directory in which to put the GIF files
+   * @param rasterizers the number of threads painting bitmaps
+   * @param encoders the number of threads encoding GIF images
+   * @param writers the number of threads writing files
+   */
+  public GF2GIFPipeline(GF2GIFs converter, String targetDirectory, int rasterizers, int encoders, int writers) {
+    this.converter = converter;
+    this.rasterizers = rasterizers;
+    this.encoders = encoders;
+    this.writers = writers;
+    for (int i = 0; i < writeLocks.length; i++) {
+      writeLocks[i] = new Object();
+    }
+    colorModel = GF2GIFCallback.makeColorModel(converter.foreground, converter.background,
+                                               converter.hasTransparent, converter.transparentBackground);
+    filePrefix = GF2GIFCallback.makeFilePrefix(converter.filePrefix, targetDirectory);
+    sink = (converter.sink != null) ? converter.sink : new FileSink();
+  }
+
+  /**
+   * Sets the number of characters each queue can hold.
+   */
+  public void setQueueSize(int size) {
+    queueSize = size;
+  }
+
+  /**
+   * Converts every character of the given source, printing the
+   * preamble comment and the character codes as they are parsed, and
+   * the work done by each stage at the end.
+   *
+   * @param gfInputFile the generic font
+   * @param streaming whether the source cannot seek to its postamble
+   * ahead of time
+   * @param log where to print
+   * @return the number of characters in the file
+   */
+  public int convert(GFSource gfInputFile, boolean streaming, PrintStream log) throws GFFileFormatException {
+    ParseCallback callback = new ParseCallback();
+    callback.log = log;
+
+    if (converter.rowsGiven) {
+      minHeight = converter.minRow;
+      maxHeight = converter.maxRow;
+    }
+    else if (converter.tightBoundingBoxes) {
+      minHeight = Integer.MAX_VALUE;
+      maxHeight = Integer.MIN_VALUE;
+    }
+    else if (streaming) {
+      callback.waitForPostamble = true;
+    }
+    else {
+      PostCommand post = gfInputFile.getPostCommand();
+      minHeight = post.getMinN();
+      maxHeight = post.getMaxN();
+    }
+    if (converter.manifest != null) {
+      manifest = converter.manifest.startFont(streaming ? null : converter.readMetrics(gfInputFile));
+    }
+
+    BlockingQueue<Glyph> parsed = new ArrayBlockingQueue<Glyph>(queueSize);
+    BlockingQueue<Glyph> rasterized = new ArrayBlockingQueue<Glyph>(queueSize);
+    BlockingQueue<Glyph> encoded = new ArrayBlockingQueue<Glyph>(queueSize);
+
+    // the parse runs on this thread, through the callback
+    StageStats parse = new StageStats("parse", 1);
+
+    // a bitmap is in use from when it is painted until it has been
+    // encoded, so no more can be in use than fit in the queue between,
+    // plus one for each thread of those two stages
+    freeBitmaps = new ArrayBlockingQueue<GlyphBitmap>(queueSize + rasterizers + encoders);
+    Stage rasterize = new Stage("rasterize", rasterizers, parsed, rasterized) {
+        void process(Glyph g) {
+          RasterEvent event = new RasterEvent();
+          event.begin();
+          rasterize(g);
+          event.end();
+          if (event.shouldCommit()) {
+            describe(event, g);
+            event.commit();
+          }
+        }
+      };
+    Stage encode = new Stage("encode", encoders, rasterized, encoded) {
+        void process(Glyph g) {
+          EncodeEvent event = new EncodeEvent();
+          event.begin();
+          GIFEncoder encoder = gifEncoders.get();
+          GlyphBitmap bitmap = g.bitmap;
+          encoder.encode(bitmap, GF2GIFCallback.imageTop(maxHeight, g.maxN),
+                         GF2GIFCallback.imageHeight(minHeight, maxHeight, g.minN, g.maxN));
+          g.gif = Arrays.copyOf(encoder.getBuffer(), encoder.size());
+          event.end();
+          if (event.shouldCommit()) {
+            describe(event, g);
+            event.commit();
+          }
+          g.bitmap = null;
+          freeBitmaps.offer(bitmap);
+          bytes.addAndGet(g.gif.length);
+        }
+      };
+    Stage write = new Stage("write", writers, encoded, null) {
+        void process(Glyph g) {
+          WriteEvent event = new WriteEvent();
+          event.begin();
+          g.written = write(g, log);
+          if (g.written) bytes.addAndGet(g.gif.length);
+          event.end();
+          if (event.shouldCommit()) {
+            describe(event, g);
+            event.commit();
+          }
+        }
+
+        void finished(Glyph g) {
+          if (g.written && (manifest != null)) {
+            manifest.record(g.characterCode, filePrefix + g.characterCode + ".gif",
+                            (g.maxM - g.minM) + 1,
+                            GF2GIFCallback.imageHeight(minHeight, maxHeight, g.minN, g.maxN),
+                            -g.minM, GF2GIFCallback.imageTop(maxHeight, g.maxN) + g.maxN + 1,
+                            g.gif.length, g.spentNanos, g.spentBytes);
+          }
+          g.gif = null;
+        }
+      };
+    rasterize.latency = ConversionMetrics.RASTER;
+    encode.latency = ConversionMetrics.ENCODE;
+    write.latency = ConversionMetrics.WRITE;
+    callback.out = parsed;
+    callback.stats = parse;
+
+    long start = System.nanoTime();
+    rasterize.start();
+    encode.start();
+    write.start();
+    try {
+      try {
+        GFParser parser = new GFParser(gfInputFile, callback);
+        parser.parse();
+      }
+      finally {
+        parsed.put(END);
+      }
+      parseComplete = callback.postReached && !callback.badFile && !callback.holdExceeded;
+      rasterize.join();
+      encode.join();
+      write.join();
+    }
+    catch (InterruptedException ie) {
+      ie.printStackTrace();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    log.print("The file had " + totalChars + " character");
+    if (totalChars != 1) log.print("s");
+    log.println(" altogether.");
+    log.println("Stage       threads  characters  busy seconds  characters/s  bytes");
+    report(log, parse);
+    report(log, rasterize);
+    report(log, encode);
+    report(log, write);
+    log.println("Total " + (float)seconds + " seconds.");
+    return totalChars;
+  }
+
+  /**
+   * @return whether the whole file was parsed without being found bad,
+   * and every character went through every stage and was written
+   */
+  public boolean isComplete() {
+    return parseComplete && (failures.get() == 0) && (failedWrites.get() == 0);
+  }
+
+  /**
+   * @return the number of files that could not be written
+   */
+  public int getFailedWrites() {
+    return failedWrites.get();
+  }
+
+  private void rasterize(Glyph g) {
+    GlyphBitmap bitmap = freeBitmaps.poll();
+    if (bitmap == null) bitmap = new GlyphBitmap();
+    bitmap.reset((g.maxM - g.minM) + 1, (g.maxN - g.minN) + 1);
+    int[] r = g.runs;
+    int k = 0;
+    while (k < g.runsLength) {
+      int row = r[k++];
+      int column = r[k++];
+      boolean black = (r[k++] == 1);
+      int end = r[k++] + k;
+      for (; k < end; k++) {
+        if (black) {
+          bitmap.fillSpan(row, column, column + r[k]);
+          g.pixels = g.pixels + r[k];
+        }
+        column = column + r[k];
+        black = !black;
+      }
+    }
+    g.bitmap = bitmap;
+    g.runs = null;
+  }
+
+  /**
+   * Fills in an event with the given character.
+   */
+  static void describe(GlyphEvent event, Glyph g) {
+    event.setCharacter(g.characterCode, g.minM, g.maxM, g.minN, g.maxN);
+    event.runs = g.runCount;
+    event.pixels = g.pixels;
+    if (g.gif != null) event.bytes = g.gif.length;
+  }
+
+  /**
+   * Writes the image of a character unless a later character with the
+   * same code has already been written.
+   *
+   * @return whether the file was written
+   */
+  private boolean write(Glyph g, PrintStream log) {
+    Integer code = Integer.valueOf(g.characterCode);
+    synchronized (writeLocks[g.characterCode & (writeLocks.length - 1)]) {
+      Integer last = written.get(code);
+      if ((last != null) && (last.intValue() > g.sequence)) return false;
+      written.put(code, Integer.valueOf(g.sequence));
+
+      String name = filePrefix + g.characterCode + ".gif";
+      try {
+        sink.write(name, g.gif, 0, g.gif.length);
+      }
+      catch (FileNotFoundException fnfe) {
+        log.println("! could not create file " + name);
+        failedWrites.incrementAndGet();
+        ConversionMetrics.WRITE_FAILURES.inc();
+        return false;
+      }
+      catch (IOException ioe) {
+        ioe.printStackTrace(log);
+        failedWrites.incrementAndGet();
+        ConversionMetrics.WRITE_FAILURES.inc();
+        return false;
+      }
+      ConversionMetrics.GLYPHS.inc();
+      ConversionMetrics.OUTPUT_BYTES.add(g.gif.length);
+      return true;
+    }
+  }
+
+  private static void report(PrintStream log, StageStats s) {
+    double busy = s.busyNanos.get() / 1e9;
+    long rate = (busy > 0) ? Math.round(s.items.get() / busy) : 0;
+    log.println(pad(s.name, 12) + pad("" + s.threads, 9) + pad("" + s.items.get(), 12) +
+                pad("" + (float)busy, 14) + pad("" + rate, 14) +
+                ((s.bytes.get() > 0) ? ("" + s.bytes.get()) : ""));
+  }
+
+  private static String pad(String s, int width) {
+    StringBuffer b = new StringBuffer(s);
+    while (b.length() < width) b.append(' ');
+    return b.toString();
+  }
+
+}
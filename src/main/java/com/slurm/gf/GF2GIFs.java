@@ -27,6 +27,7 @@
 package com.slurm.gf;
 import java.awt.*;
 import java.io.*;
+import java.util.ArrayList;
 
 /**
  * Application to convert a generic font file into a set of GIF image
@@ -38,24 +39,53 @@ public class GF2GIFs {
 
   static final String BANNER = "This is a GF2GIFs, version 1.0";
 
+  // the options that apply to every file converted
+  Color foreground = Color.black;
+  Color background = Color.white;
+  boolean hasTransparent = false;
+  boolean transparentBackground = false;
+  boolean tightBoundingBoxes = false;
+  String filePrefix = "char";
+  boolean scanline = false;
+  boolean rowsGiven = false;
+  int minRow = 0;
+  int maxRow = 0;
+
+  /** the most bytes of pixels to hold back for a streamed font's postamble */
+  long holdLimit = GF2GIFCallback.HOLD_LIMIT;
+
+  /** the size of the atlas images, or 0 to write a file for each character */
+  int atlasSize = 0;
+
+  /** where to record each character written, or null */
+  GlyphManifest manifest;
+
+  /** where to put the GIF files, or null to write each to a file */
+  GlyphSink sink;
+
   public static void main(String args[]) {
 
+    GF2GIFs converter = new GF2GIFs();
     String gfFileName = "";
-    Color foreground = Color.black;
-    Color background = Color.white;
-    boolean hasTransparent = false;
-    boolean transparentBackground = false;
     boolean transparentForeground = false;
-    boolean tightBoundingBoxes = false;
-    String filePrefix = "char";
     String targetDirectory = "";
+    boolean batch = false;
+    int threads = 0;
+    ArrayList<String> inputs = new ArrayList<String>();
+    int[] stageThreads = null;
+    String metricsFile = null;
+    String manifestFile = null;
+    String archiveFile = null;
+    int archiveFormat = ArchiveSink.ZIP;
+    boolean stored = false;
+    int metricsPort = 0;
 
     for (int arg = 0; arg < args.length; arg++) {
       if (args[arg].equals("-fg")) {
         arg++;
         if (arg >= args.length) usageExit();
         try {
-          foreground = new Color(Integer.parseInt(args[arg], 16));
+          converter.foreground = new Color(Integer.parseInt(args[arg], 16));
         }
         catch (NumberFormatException nfe) {
           usageExit();
@@ -65,67 +95,284 @@ public class GF2GIFs {
         arg++;
         if (arg >= args.length) usageExit();
         try {
-          background = new Color(Integer.parseInt(args[arg], 16));
+          converter.background = new Color(Integer.parseInt(args[arg], 16));
         }
         catch (NumberFormatException nfe) {
           usageExit();
         }
       }
       else if (args[arg].equals("-tb")) {
-        transparentBackground = true;
+        converter.transparentBackground = true;
       }
       else if (args[arg].equals("-tf")) {
         transparentForeground = true;
       }
       else if (args[arg].equals("-tight")) {
-        tightBoundingBoxes = true;
+        converter.tightBoundingBoxes = true;
       }
       else if (args[arg].equals("-p")) {
         arg++;
         if (arg >= args.length) usageExit();
-        filePrefix = args[arg];
+        converter.filePrefix = args[arg];
       }
       else if (args[arg].equals("-d")) {
         arg++;
         if (arg >= args.length) usageExit();
         targetDirectory = args[arg];
       }
+      else if (args[arg].equals("-scanline")) {
+        converter.scanline = true;
+      }
+      else if (args[arg].equals("-batch")) {
+        batch = true;
+      }
+      else if (args[arg].equals("-j")) {
+        arg++;
+        if (arg >= args.length) usageExit();
+        try {
+          threads = Integer.parseInt(args[arg]);
+        }
+        catch (NumberFormatException nfe) {
+          usageExit();
+        }
+        if (threads < 1) usageExit();
+      }
+      else if (args[arg].equals("-hold")) {
+        arg++;
+        if (arg >= args.length) usageExit();
+        int megabytes = 0;
+        try {
+          megabytes = Integer.parseInt(args[arg]);
+        }
+        catch (NumberFormatException nfe) {
+          usageExit();
+        }
+        if (megabytes < 1) usageExit();
+        converter.holdLimit = (long)megabytes << 20;
+      }
+      else if (args[arg].equals("-pipeline")) {
+        arg++;
+        if (arg >= args.length) usageExit();
+        String[] counts = args[arg].split(",");
+        if (counts.length != 3) usageExit();
+        stageThreads = new int[3];
+        try {
+          for (int i = 0; i < 3; i++) {
+            stageThreads[i] = Integer.parseInt(counts[i]);
+            if (stageThreads[i] < 1) usageExit();
+          }
+        }
+        catch (NumberFormatException nfe) {
+          usageExit();
+        }
+      }
+      else if (args[arg].equals("-metrics")) {
+        arg++;
+        if (arg >= args.length) usageExit();
+        metricsFile = args[arg];
+      }
+      else if (args[arg].equals("-atlas")) {
+        arg++;
+        if (arg >= args.length) usageExit();
+        try {
+          converter.atlasSize = Integer.parseInt(args[arg]);
+        }
+        catch (NumberFormatException nfe) {
+          usageExit();
+        }
+        if ((converter.atlasSize < 1) || (converter.atlasSize > GF2GIFAtlas.MAX_PAGE_SIZE)) usageExit();
+      }
+      else if (args[arg].equals("-zip") || args[arg].equals("-tar")) {
+        archiveFormat = args[arg].equals("-zip") ? ArchiveSink.ZIP : ArchiveSink.TAR;
+        arg++;
+        if (arg >= args.length) usageExit();
+        archiveFile = args[arg];
+      }
+      else if (args[arg].equals("-stored")) {
+        stored = true;
+      }
+      else if (args[arg].equals("-manifest")) {
+        arg++;
+        if (arg >= args.length) usageExit();
+        manifestFile = args[arg];
+      }
+      else if (args[arg].equals("-metrics-port")) {
+        arg++;
+        if (arg >= args.length) usageExit();
+        try {
+          metricsPort = Integer.parseInt(args[arg]);
+        }
+        catch (NumberFormatException nfe) {
+          usageExit();
+        }
+        if ((metricsPort < 1) || (metricsPort > 65535)) usageExit();
+      }
+      else if (args[arg].equals("-rows")) {
+        arg++;
+        if (arg >= args.length) usageExit();
+        int comma = args[arg].indexOf(',');
+        if (comma < 0) usageExit();
+        try {
+          converter.minRow = Integer.parseInt(args[arg].substring(0, comma));
+          converter.maxRow = Integer.parseInt(args[arg].substring(comma + 1));
+        }
+        catch (NumberFormatException nfe) {
+          usageExit();
+        }
+        converter.rowsGiven = true;
+      }
       else if (args[arg].equals("--help")) {
         usageHelpExit();
       }
+      else if (args[arg].equals("-")) {
+        gfFileName = args[arg];
+        inputs.add(args[arg]);
+      }
       else if (args[arg].charAt(0) == '-') {
         System.out.println("unknown flag " + args[arg]);
         usageExit();
       }
-      else gfFileName = args[arg];
+      else {
+        gfFileName = args[arg];
+        inputs.add(args[arg]);
+      }
     }
 
     if (gfFileName.equals("")) {
       usageExit();
     }
-    if (transparentBackground && transparentForeground) {
+    if (stored && (archiveFormat == ArchiveSink.ZIP)) {
+      archiveFormat = ArchiveSink.ZIP_STORED;
+    }
+    if ("-".equals(archiveFile)) {
+      // standard output is the archive's; the messages go to standard error
+      converter.sink = new ArchiveSink(new FileOutputStream(FileDescriptor.out), archiveFormat);
+      System.setOut(System.err);
+    }
+    if (converter.transparentBackground && transparentForeground) {
       System.out.println("Warning: -tb and -tf conflict. Only -tb will be used.");
       transparentForeground = false;
     }
-    if (transparentBackground || transparentForeground) {
-      hasTransparent = true;
+    if (converter.tightBoundingBoxes && converter.rowsGiven) {
+      System.out.println("Warning: -tight and -rows conflict. Only -tight will be used.");
+      converter.rowsGiven = false;
+    }
+    if ((stageThreads != null) && (batch || (threads > 1))) {
+      System.out.println("Warning: -pipeline cannot be combined with -batch or -j. Only -pipeline will be used.");
+      batch = false;
+      threads = 0;
+    }
+    if ((converter.atlasSize > 0) && (stageThreads != null)) {
+      System.out.println("Warning: -atlas cannot be combined with -pipeline. Only -atlas will be used.");
+      stageThreads = null;
+    }
+    if (converter.scanline && (stageThreads != null)) {
+      System.out.println("Warning: -scanline cannot be combined with -pipeline. Only -pipeline will be used.");
+      converter.scanline = false;
+    }
+    if ((converter.atlasSize > 0) && !batch && (threads > 1)) {
+      System.out.println("Warning: -atlas needs the whole font in order. -j will be ignored.");
+      threads = 0;
+    }
+    if (converter.transparentBackground || transparentForeground) {
+      converter.hasTransparent = true;
     }
 
     System.out.println(BANNER);
-    try {
-      GFFile gfInputFile = new GFFile(gfFileName);
-      GF2GIFCallback callback;
 
-      if (!tightBoundingBoxes) {
-        PostCommand post = gfInputFile.getPostCommand();
-        int minN = post.getMinN();
-        int maxN = post.getMaxN();
+    if (metricsFile != null) {
+      MetricsRegistry.DEFAULT.dumpOnExit(new File(metricsFile));
+    }
+    if (metricsPort != 0) {
+      try {
+        MetricsRegistry.DEFAULT.serve(metricsPort);
+      }
+      catch (IOException ioe) {
+        System.out.println("Warning: cannot serve metrics on port " + metricsPort + ": " + ioe.getMessage());
+      }
+    }
 
-        callback = new GF2GIFCallback(foreground, background, hasTransparent, transparentBackground, minN, maxN, filePrefix, targetDirectory);
+    if ((archiveFile != null) && (converter.sink == null)) {
+      try {
+        converter.sink = new ArchiveSink(new FileOutputStream(archiveFile), archiveFormat);
       }
-      else {
-        callback = new GF2GIFCallback(foreground, background, hasTransparent, transparentBackground, filePrefix, targetDirectory);
+      catch (IOException ioe) {
+        System.out.println("fatal: cannot create archive " + archiveFile + ": " + ioe.getMessage());
+        System.exit(1);
+      }
+    }
+    if (converter.sink != null) {
+      ArchiveSink archive = (ArchiveSink)converter.sink;
+      // the threads of these finish characters in no particular order;
+      // a batch gives each font a group of its own instead
+      archive.setSorted(!batch && ((threads > 1) || (stageThreads != null)));
+      archive.closeOnExit();
+    }
+
+    if (manifestFile != null) {
+      try {
+        converter.manifest = new GlyphManifest(new File(manifestFile));
+        converter.manifest.closeOnExit();
+      }
+      catch (IOException ioe) {
+        System.out.println("fatal: cannot create manifest " + manifestFile + ": " + ioe.getMessage());
+        System.exit(1);
+      }
+    }
+
+    if (batch) {
+      if (threads == 0) threads = Runtime.getRuntime().availableProcessors();
+      GF2GIFBatch gfBatch = new GF2GIFBatch(converter, targetDirectory, threads);
+      try {
+        for (String input : inputs) {
+          if (input.equals("-")) gfBatch.addList(System.in);
+          else gfBatch.addInput(input);
+        }
+      }
+      catch (IOException ioe) {
+        System.out.println("fatal: " + ioe.getMessage());
+        System.exit(1);
+      }
+      boolean ok = gfBatch.run(System.out);
+      if (!converter.closeSink()) ok = false;
+      System.exit(ok ? 0 : 1);
+    }
+
+    try {
+      boolean streaming = gfFileName.equals("-");
+      if ((threads > 1) && !streaming) {
+        GF2GIFParallel parallel = new GF2GIFParallel(converter, gfFileName, targetDirectory, threads);
+        int totalChars = parallel.convert(System.out);
+        System.out.print("The file had " + totalChars + " character");
+        if (totalChars != 1) System.out.print("s");
+        System.out.println(" altogether.");
+        if (!parallel.isComplete()) {
+          System.out.println("! some characters could not be converted.");
+        }
+        return;
+      }
+      if (threads > 1) {
+        System.out.println("Warning: -j needs a GF file, not standard input.");
+      }
+      GFSource gfInputFile;
+      if (streaming) gfInputFile = new GFStreamSource(System.in);
+      else gfInputFile = new GFFile(gfFileName);
+
+      if (stageThreads != null) {
+        GF2GIFPipeline pipeline = new GF2GIFPipeline(converter, targetDirectory,
+                                                     stageThreads[0], stageThreads[1], stageThreads[2]);
+        pipeline.convert(gfInputFile, streaming, System.out);
+        if (!pipeline.isComplete()) {
+          System.out.println("! some characters could not be converted.");
+        }
+        return;
+      }
+
+      if (converter.scanline && streaming &&
+          !converter.tightBoundingBoxes && !converter.rowsGiven) {
+        System.out.println("Warning: -scanline needs -tight or -rows when reading standard input.");
       }
+      GF2GIFCallback callback = converter.createCallback(gfInputFile, streaming, targetDirectory);
       GFParser parser = new GFParser(gfInputFile, callback);
 
       parser.parse();
@@ -141,10 +388,90 @@ public class GF2GIFs {
     catch (GFFileFormatException gfffe) {
       gfffe.printStackTrace();
     }
+    finally {
+      if (!converter.closeSink()) System.exit(1);
+    }
+  }
+
+  /**
+   * Finishes the archive, if the GIF files are going into one.
+   *
+   * @return whether it could be finished
+   */
+  boolean closeSink() {
+    if (sink == null) return true;
+    try {
+      sink.close();
+      return true;
+    }
+    catch (IOException ioe) {
+      System.out.println("fatal: could not finish the archive: " + ioe.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Creates a callback that converts the characters of the given
+   * source according to the options of this converter.
+   *
+   * @param gfInputFile the generic font to be converted
+   * @param streaming whether the source cannot seek to its postamble
+   * ahead of time
+   * @param targetDirectory the directory in which to put the GIF files
+   */
+  GF2GIFCallback createCallback(GFSource gfInputFile, boolean streaming, String targetDirectory) throws GFFileFormatException {
+    GF2GIFCallback callback;
+
+    if (atlasSize > 0) {
+      // every character keeps its tight bounding box
+      callback = new GF2GIFAtlas(foreground, background, hasTransparent, transparentBackground, filePrefix, targetDirectory, atlasSize);
+    }
+    else if (rowsGiven) {
+      callback = new GF2GIFCallback(foreground, background, hasTransparent, transparentBackground, minRow, maxRow, filePrefix, targetDirectory);
+    }
+    else if (streaming && !tightBoundingBoxes) {
+      // the row bounds will come with the postamble
+      callback = new GF2GIFCallback(foreground, background, hasTransparent, transparentBackground, filePrefix, targetDirectory);
+      callback.setHeightsFromPostamble(true);
+      callback.setHoldLimit(holdLimit);
+    }
+    else if (!tightBoundingBoxes) {
+      PostCommand post = gfInputFile.getPostCommand();
+      int minN = post.getMinN();
+      int maxN = post.getMaxN();
+
+      callback = new GF2GIFCallback(foreground, background, hasTransparent, transparentBackground, minN, maxN, filePrefix, targetDirectory);
+    }
+    else {
+      callback = new GF2GIFCallback(foreground, background, hasTransparent, transparentBackground, filePrefix, targetDirectory);
+    }
+    callback.setScanlineRendering(scanline);
+    if (sink != null) {
+      callback.setSink(sink);
+    }
+    if (manifest != null) {
+      callback.setManifest(manifest.startFont(streaming ? null : readMetrics(gfInputFile)));
+    }
+    return callback;
+  }
+
+  /**
+   * @return the postamble of the given source, which is left where it
+   * was, or null if it cannot be read
+   */
+  GFMetrics readMetrics(GFSource gfInputFile) throws GFFileFormatException {
+    try {
+      return GFMetrics.read(gfInputFile);
+    }
+    catch (IOException ioe) {
+      ioe.printStackTrace();
+      return null;
+    }
   }
 
   private static void usage() {
-    System.out.println("usage: java GF2GIFs [-tb] [-tf] [-fg foreground] [-bg background] [-tight] [-p fileprefix] [-d targetdirectory] gffile");
+    System.out.println("usage: java GF2GIFs [-tb] [-tf] [-fg foreground] [-bg background] [-tight] [-rows minn,maxn] [-hold megabytes] [-scanline] [-j threads] [-pipeline r,e,w] [-metrics file] [-metrics-port port] [-manifest file] [-atlas size] [-zip file | -tar file] [-stored] [-p fileprefix] [-d targetdirectory] gffile");
+    System.out.println("       java GF2GIFs -batch [-j threads] [options] input...");
   }
 
   private static void usageExit() {
@@ -170,6 +497,43 @@ public class GF2GIFs {
     System.out.println("  -tf:                create GIFs with a transparent foreground");
     System.out.println("  -tight:             create GIFs with a tight bounding box around");
     System.out.println("                      each character, rather than constant height");
+    System.out.println("  -rows minn,maxn:    use rows minn through maxn (at least) for every");
+    System.out.println("                      character, instead of the postamble's bounds");
+    System.out.println("  -hold megabytes:    when reading standard input without -tight or");
+    System.out.println("                      -rows, every character is held in memory until");
+    System.out.println("                      the postamble; give up on the font once they");
+    System.out.println("                      take more than this (64 by default)");
+    System.out.println("  -scanline:          encode each row as soon as it is painted, so that");
+    System.out.println("                      only one row of pixels is held in memory");
+    System.out.println("  -batch:             convert every GF file named by the inputs, each");
+    System.out.println("                      into its own directory under targetdirectory");
+    System.out.println("  -j threads:         convert this many characters of gffile at once, or");
+    System.out.println("                      in batch mode this many files (by default, one");
+    System.out.println("                      for each processor)");
+    System.out.println("  -pipeline r,e,w:    parse, rasterize, encode and write in separate");
+    System.out.println("                      stages, with r, e and w threads for the last");
+    System.out.println("                      three, and report the work done by each stage");
+    System.out.println("  -metrics file:      write counters and latency histograms to file,");
+    System.out.println("                      in Prometheus text format, when the run ends");
+    System.out.println("  -metrics-port port: serve the same at http://localhost:port/metrics");
+    System.out.println("                      while the run lasts");
+    System.out.println("  -manifest file:     write a JSON line to file for each GIF image,");
+    System.out.println("                      with its path, size, baseline, char_loc, and");
+    System.out.println("                      the time and memory spent on it");
+    System.out.println("  -atlas size:        pack the characters into images of at most size");
+    System.out.println("                      by size pixels, fileprefixatlasN.gif, with their");
+    System.out.println("                      rectangles, baselines and widths in");
+    System.out.println("                      fileprefixatlas.txt");
+    System.out.println("  -zip file:          put the GIF files into a ZIP archive instead,");
+    System.out.println("                      or write it to standard output if file is -");
+    System.out.println("  -tar file:          the same, with a tar archive");
+    System.out.println("  -stored:            do not compress the entries of the ZIP archive");
+    System.out.println("  gffile:             the GF file to convert, or - to read it from");
+    System.out.println("                      standard input");
+    System.out.println("  input:              in batch mode, a GF file, a directory to search");
+    System.out.println("                      for GF files, a glob, or - to read a list of");
+    System.out.println("                      files, one per line or NUL-separated, from");
+    System.out.println("                      standard input");
     System.out.println();
 
     System.exit(0);
@@ -0,0 +1,145 @@
+// GFEventCallback.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+
+/**
+ * Low-level set of callback functions for the commands encountered
+ * while parsing generic font files.
+ * <p>
+ * Unlike GFParserCallback, whose handlers each take a Command object,
+ * the methods of this interface take the parameters of each command
+ * as primitives, so that the parser can drive them straight from its
+ * CommandCursor without creating or casting any objects.  Arrays that
+ * are passed in are reused by the parser, and only their first
+ * <i>length</i> entries are meaningful.
+ * <p>
+ * Locations are zero-based byte offsets of the command within the
+ * GF file, suitable for use as labels in messages.
+ *
+ * @author Richard Blaylock
+ * @see GFParser
+ * @see GFParserCallback
+ */
+public interface GFEventCallback {
+
+  /**
+   * respond to an error from which the parser cannot recover
+   */
+  void badGF(String msg) throws GFFileFormatException;
+
+  /**
+   * respond to an error encountered during parsing
+   */
+  void error(int label, String msg);
+
+  /**
+   * respond to any &quot;special&quot; commands that occur
+   * before a character or before the post command
+   */
+  void startSpecialCommands(int location);
+
+  /**
+   * respond to a paint command
+   *
+   * @param run the number of pixels to paint before switching color
+   */
+  void paint(int run);
+
+  /**
+   * respond to a boc or boc1 command
+   */
+  void boc(int location, int code, int previousPointer,
+           int minM, int maxM, int minN, int maxN);
+
+  /**
+   * respond to an eoc command
+   */
+  void eoc(int location);
+
+  /**
+   * respond to a skip command
+   *
+   * @param opcode which of skip0 through skip3 was used
+   * @param rows the number of rows to move down
+   */
+  void skip(int location, int opcode, int rows);
+
+  /**
+   * respond to a newrow command
+   *
+   * @param offset the column at which black pixels start in the new row
+   */
+  void newRow(int location, int offset);
+
+  /**
+   * respond to an xxx command
+   *
+   * @param length the declared length of the string, which may be negative
+   * in a corrupt file
+   */
+  void xxx(int location, int[] bytes, int length);
+
+  /**
+   * respond to a yyy command
+   *
+   * @param value the four parameter bytes as a signed int
+   */
+  void yyy(int location, int value);
+
+  /**
+   * respond to a noop command
+   */
+  void noOp(int location);
+
+  /**
+   * respond to a charloc or charloc0 command
+   */
+  void charLoc(int location, int residue, int dx, int dy,
+               int width, int pointer);
+
+  /**
+   * respond to a pre command
+   */
+  void pre(int location, int id, int[] comment, int length);
+
+  /**
+   * respond to a post command
+   */
+  void post(int location, int specialPointer, int designSize, int checkSum,
+            int hppp, int vppp, int minM, int maxM, int minN, int maxN);
+
+  /**
+   * respond to a postpost command
+   */
+  void postPost(int location, int postLoc);
+
+  /**
+   * respond to an undefined command
+   */
+  void undefined(int location, int opcode);
+
+}
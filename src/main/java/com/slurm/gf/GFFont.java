@@ -0,0 +1,276 @@
+// GFFont.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Random access to the characters of a generic font file.
+ * <p>
+ * Opening a GFFont reads only the preamble comment and the GFMetrics
+ * of the postamble.  A character
+ * is decoded only when glyph() asks for it, by going to the boc
+ * command that its char_loc points at and, for a code that shares its
+ * residue with later characters, following the back pointers of the
+ * boc commands until the code is found.  So the time taken to get one
+ * character does not depend on how many others the file has.  The
+ * most recently used characters are kept in a cache of bounded size.
+ * <p>
+ * A GFFont may be used by any number of threads at once; each call to
+ * glyph() reads from a duplicate of the mapped file.
+ *
+ * @author Richard Blaylock
+ * @see GFGlyph
+ */
+public class GFFont {
+
+  /** the default number of decoded characters to keep */
+  public static final int CACHE_SIZE = 256;
+
+  GFFile gfFile;
+  String comment;
+  GFMetrics metrics;
+
+  /** decoded characters, least recently used first */
+  LinkedHashMap<Integer,GFGlyph> cache;
+
+  /**
+   * Paints a single character into a bitmap.
+   */
+  static class GlyphCallback implements GFRowCallback, GFSelectiveCallback {
+    int characterCode;
+    int minM, maxM, minN, maxN;
+    GlyphBitmap bitmap;
+    String badMessage;
+
+    public int getInterests() {
+      return 0;
+    }
+
+    public void badGF(String msg) throws GFFileFormatException {
+      badMessage = msg;
+      throw new GFFileFormatException(msg);
+    }
+
+    public void error(int label, String s) {
+      // a character with only minor faults can still be drawn
+    }
+
+    public void startSpecialCommands(int location) {
+    }
+
+    public void paint(int run) {
+      // the parser calls paintRow instead
+    }
+
+    public void paintRow(int row, int column, boolean black, int[] runs, int count) {
+      for (int i = 0; i < count; i++) {
+        if (black) bitmap.fillSpan(row, column, column + runs[i]);
+        column = column + runs[i];
+        black = !black;
+      }
+    }
+
+    public void boc(int location, int code, int previousPointer,
+                    int minM, int maxM, int minN, int maxN) {
+      characterCode = code;
+      this.minM = minM;
+      this.maxM = maxM;
+      this.minN = minN;
+      this.maxN = maxN;
+      bitmap = new GlyphBitmap((maxM - minM) + 1, (maxN - minN) + 1);
+    }
+
+    public void eoc(int location) {
+    }
+
+    public void skip(int location, int opcode, int rows) {
+    }
+
+    public void newRow(int location, int offset) {
+    }
+
+    public void xxx(int location, int[] bytes, int length) {
+    }
+
+    public void yyy(int location, int value) {
+    }
+
+    public void noOp(int location) {
+    }
+
+    public void charLoc(int location, int residue, int dx, int dy, int width, int pointer) {
+    }
+
+    public void pre(int location, int id, int[] comment, int length) {
+    }
+
+    public void post(int location, int specialPointer, int designSize, int checkSum,
+                     int hppp, int vppp, int minM, int maxM, int minN, int maxN) {
+    }
+
+    public void postPost(int location, int postLoc) {
+    }
+
+    public void undefined(int location, int opcode) {
+    }
+  }
+
+  /**
+   * Opens a font, keeping up to CACHE_SIZE decoded characters.
+   *
+   * @param fileName the name of the GF file
+   */
+  public GFFont(String fileName) throws FileNotFoundException, GFFileFormatException {
+    this(fileName, CACHE_SIZE);
+  }
+
+  /**
+   * Opens a font.
+   *
+   * @param fileName the name of the GF file
+   * @param cacheSize the number of decoded characters to keep
+   */
+  public GFFont(String fileName, final int cacheSize) throws FileNotFoundException, GFFileFormatException {
+    gfFile = new GFFile(fileName);
+    cache = new LinkedHashMap<Integer,GFGlyph>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<Integer,GFGlyph> eldest) {
+          return size() > cacheSize;
+        }
+      };
+
+    GFFile in = gfFile.duplicate();
+    try {
+      CommandCursor c = new CommandCursor();
+      if (in.readCommand(c) != Command.PRE) {
+        throw new GFFileFormatException("First byte isn't start of preamble!");
+      }
+      int[] commentBytes = c.getBytes();
+      StringBuffer csBuffer = new StringBuffer(c.getByteCount());
+      for (int i = 0; i < c.getByteCount(); i++) {
+        csBuffer.append((char)commentBytes[i]);
+      }
+      comment = csBuffer.toString();
+
+      metrics = GFMetrics.read(in);
+    }
+    catch (IOException ioe) {
+      throw new GFFileFormatException(fileName + ": " + ioe.getMessage());
+    }
+  }
+
+  /**
+   * @return the comment in the preamble
+   */
+  public String getComment() {
+    return comment;
+  }
+
+  /**
+   * @return the metrics given by the postamble
+   */
+  public GFMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Decodes a single character, or takes it from the cache.
+   *
+   * @param code the character code
+   * @return the last character in the file with the given code, or
+   * null if there is none
+   */
+  public GFGlyph glyph(int code) throws GFFileFormatException {
+    Integer key = Integer.valueOf(code);
+    synchronized (cache) {
+      GFGlyph g = cache.get(key);
+      if (g != null) return g;
+    }
+
+    int i = metrics.indexOf(code);
+    if (i < 0) return null;
+
+    GFFile in = gfFile.duplicate();
+    CommandCursor c = new CommandCursor();
+    long p = metrics.getBeginPointer(i);
+    long boc;
+    try {
+      // follow the back pointers until the code is found
+      while (true) {
+        in.seek(p);
+        int o;
+        do {
+          o = in.readCommand(c);
+        } while ((o == Command.NO_OP) || (o == Command.YYY) ||
+                 ((Command.XXX1 <= o) && (o <= Command.XXX4)));
+        if ((o != Command.BOC) && (o != Command.BOC1)) {
+          throw new GFFileFormatException("byte " + p + " does not lead to boc (" + o + ")");
+        }
+        if (c.getCharacterCode() == code) {
+          boc = c.getLocation();
+          break;
+        }
+        long previous = c.getPreviousCharacterPointer();
+        if (previous < 0) return null;
+        if (previous >= c.getLocation()) {
+          throw new GFFileFormatException("back pointer " + previous + " at byte " + c.getLocation() + " does not point backwards");
+        }
+        p = previous;
+      }
+    }
+    catch (IOException ioe) {
+      throw new GFFileFormatException(ioe.getMessage());
+    }
+
+    GlyphCallback callback = new GlyphCallback();
+    GFParser parser = new GFParser(in, callback);
+    parser.parseCharacter(boc);
+    if (callback.badMessage != null) {
+      throw new GFFileFormatException(callback.badMessage);
+    }
+    GFGlyph g = new GFGlyph(callback.characterCode, callback.minM, callback.maxM,
+                            callback.minN, callback.maxN, callback.bitmap);
+    synchronized (cache) {
+      cache.put(key, g);
+    }
+    return g;
+  }
+
+  /**
+   * Forgets every decoded character.
+   */
+  public void clearCache() {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  public void close() {
+    gfFile.close();
+  }
+
+}
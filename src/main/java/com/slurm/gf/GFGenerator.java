@@ -0,0 +1,501 @@
+// GFGenerator.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Writes synthetic generic font files, for testing GF2GIFs at sizes
+ * and in corners that real fonts seldom reach.  The number of
+ * characters, their codes (codes of 256 and up share residues, and so
+ * need extensions and back pointers), their size, the kind of runs
+ * that make up their rows and the number of special commands among
+ * them can all be chosen.  The file is laid out as METAFONT lays out
+ * its own, boc1 and char_loc0 included where they fit, and GFType
+ * finds nothing wrong with it.
+ * <p>
+ * The same settings and seed always give the same file.
+ *
+ * @author Richard Blaylock
+ * @see GFType
+ */
+public class GFGenerator {
+
+  /** each character is a ring with a ragged edge */
+  public static final int RUNS_RING = 0;
+
+  /** runs of random length, alternating white and black */
+  public static final int RUNS_RANDOM = 1;
+
+  /** runs of a single pixel, the worst case for every stage */
+  public static final int RUNS_CHECKER = 2;
+
+  /** every row is a single black run */
+  public static final int RUNS_SOLID = 3;
+
+  static final String[] RUNS_NAMES = {"ring", "random", "checker", "solid"};
+
+  int characters = 128;
+  int firstCode = 0;
+  int width = 40;
+  int height = 50;
+  int runs = RUNS_RING;
+  int meanRun = 8;
+  double specials = 0;
+  int resolution = 600;
+  long seed = 1;
+
+  // the file being written
+  DataOutputStream out;
+  long location;
+  Random random;
+
+  // the black spans of the current row: columns starts[i] through
+  // ends[i] - 1, in order
+  int[] starts = new int[16];
+  int[] ends = new int[16];
+  int spanCount;
+
+  public void setCharacters(int n) {
+    characters = Math.max(0, n);
+  }
+
+  /**
+   * @param code the code of the first character; the rest follow on
+   * from it.  Codes outside 0 to 255 are extensions of their residue.
+   */
+  public void setFirstCode(int code) {
+    firstCode = code;
+  }
+
+  /**
+   * @param width the width of every character, in pixels
+   * @param height the height of every character, in pixels
+   */
+  public void setSize(int width, int height) {
+    this.width = Math.max(1, width);
+    this.height = Math.max(1, height);
+  }
+
+  /**
+   * @param runs one of the RUNS_ constants
+   * @param meanRun the mean run length, for RUNS_RANDOM
+   */
+  public void setRuns(int runs, int meanRun) {
+    this.runs = runs;
+    this.meanRun = Math.max(1, meanRun);
+  }
+
+  /**
+   * @param specials the mean number of xxx and yyy commands per
+   * character, half of them before its boc and half among its rows
+   */
+  public void setSpecials(double specials) {
+    this.specials = Math.max(0, specials);
+  }
+
+  /**
+   * @param dpi the resolution, which only affects the postamble
+   */
+  public void setResolution(int dpi) {
+    resolution = Math.max(1, dpi);
+  }
+
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Writes the whole font to the given stream, which is flushed but
+   * not closed.
+   *
+   * @throws IOException if the stream fails, or the font would be too
+   * big for the four-byte pointers of the GF format
+   */
+  public void write(OutputStream os) throws IOException {
+    out = new DataOutputStream(new BufferedOutputStream(os, 65536));
+    location = 0;
+    random = new Random(seed);
+
+    // the preamble
+    String comment = " GFGenerator " + characters + " " + RUNS_NAMES[runs]
+        + " " + width + "x" + height + " seed " + seed;
+    put(Command.PRE);
+    put(Command.GF_ID_BYTE);
+    put(comment.length());
+    for (int i = 0; i < comment.length(); i++) put(comment.charAt(i));
+
+    int minN = -(height / 4);
+    int maxN = minN + height - 1;
+    int[] pointers = new int[256];
+    Arrays.fill(pointers, -1);
+    for (int i = 0; i < characters; i++) {
+      int code = firstCode + i;
+      int residue = code & 0xff;
+      // a character starts where the previous one ended, so that its
+      // pointer takes in the specials before its boc
+      int pointer = pointer();
+      writeSpecials(code, specialsBefore());
+      writeBOC(code, pointers[residue], minN, maxN);
+      writeRows(code);
+      put(Command.EOC);
+      pointers[residue] = pointer;
+    }
+    writePostamble(minN, maxN, pointers);
+    out.flush();
+  }
+
+  private void writePostamble(int minN, int maxN, int[] pointers) throws IOException {
+    int post = pointer();
+    double pixelsPerPoint = resolution / 72.27;
+    // the design size is made large enough for the widths to fit
+    // in fix_words
+    double widthPoints = width / pixelsPerPoint;
+    int designSize = (int)Math.min(2047, Math.max(10, Math.ceil(widthPoints / 15)));
+    int hppp = (int)Math.round(pixelsPerPoint * 65536);
+    int tfmWidth = (int)Math.round(widthPoints / designSize * (1 << 20));
+    long dx = (long)width << 16;
+
+    put(Command.POST);
+    putFour(post);
+    putFour(designSize << 20);
+    putFour(0);
+    putFour(hppp);
+    putFour(hppp);
+    putFour(0);
+    putFour(width);
+    putFour(minN);
+    putFour(maxN);
+    for (int residue = 0; residue < 256; residue++) {
+      if (pointers[residue] < 0) continue;
+      if (width < 256) {
+        put(Command.CHAR_LOC0);
+        put(residue);
+        put(width);
+      }
+      else {
+        put(Command.CHAR_LOC);
+        put(residue);
+        putFour((int)Math.min(Integer.MAX_VALUE, dx));
+        putFour(0);
+      }
+      putFour(tfmWidth);
+      putFour(pointers[residue]);
+    }
+    put(Command.POST_POST);
+    putFour(post);
+    put(Command.GF_ID_BYTE);
+    for (int i = 0; (i < 4) || ((location & 3) != 0); i++) {
+      put(Command.GF_POST_SIG);
+    }
+  }
+
+  private void writeBOC(int code, int pointer, int minN, int maxN) throws IOException {
+    if ((pointer == -1) && (code >= 0) && (code < 256) && (width < 256)
+        && (maxN >= 0) && (maxN < 256) && (height <= 256)) {
+      put(Command.BOC1);
+      put(code);
+      put(width);
+      put(width);
+      put(height - 1);
+      put(maxN);
+    }
+    else {
+      put(Command.BOC);
+      putFour(code);
+      putFour(pointer);
+      putFour(0);
+      putFour(width);
+      putFour(minN);
+      putFour(maxN);
+    }
+  }
+
+  /**
+   * Writes the paint, skip and new_row commands of one character,
+   * row by row from the top.
+   */
+  private void writeRows(int code) throws IOException {
+    double specialsPerRow = specials / 2 / height;
+    int previous = -1;
+    for (int row = 0; row < height; row++) {
+      makeSpans(row);
+      if (spanCount == 0) continue;
+
+      if ((previous >= 0) && (random.nextDouble() < specialsPerRow)) {
+        writeSpecials(code, 1);
+      }
+      int column;
+      if ((previous >= 0) && (row == previous + 1) && (starts[0] <= 164)) {
+        // a new row that starts out black
+        put(Command.NEW_ROW_0 + starts[0]);
+        column = starts[0];
+      }
+      else {
+        // the first row of the character, or a row after blank ones or
+        // with too much white at its start: both start out white at
+        // min_m
+        if (previous >= 0) skip(row - previous - 1);
+        else if (row > 0) skip(row - 1);
+        paint(starts[0]);
+        column = starts[0];
+      }
+      for (int i = 0; i < spanCount; i++) {
+        if (i > 0) paint(starts[i] - column);
+        paint(ends[i] - starts[i]);
+        column = ends[i];
+      }
+      previous = row;
+    }
+  }
+
+  /**
+   * Fills in the black spans of the given row, counting from 0 at the
+   * top of the character.
+   */
+  private void makeSpans(int row) {
+    spanCount = 0;
+    switch (runs) {
+    case RUNS_RING:
+      makeRingSpans(row);
+      break;
+    case RUNS_RANDOM:
+      for (int x = randomRun(); x < width; ) {
+        int end = Math.min(width, x + randomRun());
+        addSpan(x, end);
+        x = end + randomRun();
+      }
+      break;
+    case RUNS_CHECKER:
+      for (int x = (row & 1); x < width; x = x + 2) addSpan(x, x + 1);
+      break;
+    default:
+      addSpan(0, width);
+      break;
+    }
+  }
+
+  private void makeRingSpans(int row) {
+    double rx = width / 2.0;
+    double ry = height / 2.0;
+    double dy = (row + 0.5 - ry) / ry;
+    if ((dy <= -1) || (dy >= 1)) return;
+    double outer = rx * Math.sqrt(1 - dy * dy);
+    double jitter = Math.max(0.5, width / 100.0);
+    int a = jitter(rx - outer, jitter);
+    int d = jitter(rx + outer, jitter);
+    double hole = 0.55;
+    if (Math.abs(dy) < hole) {
+      double inner = hole * rx * Math.sqrt(1 - (dy / hole) * (dy / hole));
+      int b = jitter(rx - inner, jitter);
+      int c = jitter(rx + inner, jitter);
+      if ((a < b) && (b < c) && (c < d)) {
+        addSpan(a, b);
+        addSpan(c, d);
+        return;
+      }
+    }
+    if (a < d) addSpan(a, d);
+  }
+
+  private int jitter(double x, double amount) {
+    long j = Math.round(x + random.nextGaussian() * amount);
+    return (int)Math.max(0, Math.min(width, j));
+  }
+
+  /**
+   * @return a run length with a geometric distribution and a mean of
+   * meanRun
+   */
+  private int randomRun() {
+    if (meanRun == 1) return 1;
+    double u = random.nextDouble();
+    return 1 + (int)(Math.log(1 - u) / Math.log(1 - 1.0 / meanRun));
+  }
+
+  private void addSpan(int from, int to) {
+    if (spanCount == starts.length) {
+      starts = Arrays.copyOf(starts, 2 * spanCount);
+      ends = Arrays.copyOf(ends, 2 * spanCount);
+    }
+    starts[spanCount] = from;
+    ends[spanCount] = to;
+    spanCount++;
+  }
+
+  private int specialsBefore() {
+    double mean = specials / 2;
+    int k = (int)mean;
+    if (random.nextDouble() < mean - k) k++;
+    return k;
+  }
+
+  /**
+   * Writes k specials, each an xxx command followed half of the time
+   * by a yyy command, as METAFONT's own specials are.
+   */
+  private void writeSpecials(int code, int k) throws IOException {
+    for (int i = 0; i < k; i++) {
+      String s = "synthetic special " + code + "." + i;
+      put(Command.XXX1);
+      put(s.length());
+      for (int j = 0; j < s.length(); j++) put(s.charAt(j));
+      if (random.nextBoolean()) {
+        put(Command.YYY);
+        putFour(random.nextInt());
+      }
+    }
+  }
+
+  /**
+   * Moves past the given number of blank rows to the start of the
+   * next row.
+   */
+  private void skip(int rows) throws IOException {
+    if (rows == 0) put(Command.SKIP0);
+    else {
+      int k = bytesFor(rows);
+      put(Command.SKIP0 + k);
+      putBytes(rows, k);
+    }
+  }
+
+  private void paint(int d) throws IOException {
+    if (d < 64) put(Command.PAINT_0 + d);
+    else {
+      int k = bytesFor(d);
+      put(Command.PAINT1 + k - 1);
+      putBytes(d, k);
+    }
+  }
+
+  /**
+   * @return the number of bytes, from 1 to 3, that the unsigned
+   * value v needs
+   */
+  private static int bytesFor(int v) {
+    if (v < 0x100) return 1;
+    if (v < 0x10000) return 2;
+    return 3;
+  }
+
+  private int pointer() throws IOException {
+    if (location > Integer.MAX_VALUE) {
+      throw new IOException("the font is too big for GF pointers");
+    }
+    return (int)location;
+  }
+
+  private void put(int b) throws IOException {
+    out.write(b);
+    location++;
+  }
+
+  private void putBytes(int v, int k) throws IOException {
+    for (int i = k - 1; i >= 0; i--) put(v >>> (8 * i));
+  }
+
+  private void putFour(int i) throws IOException {
+    out.writeInt(i);
+    location = location + 4;
+  }
+
+  public static void main(String args[]) {
+    GFGenerator generator = new GFGenerator();
+    String output = null;
+    try {
+      for (int arg = 0; arg < args.length; arg++) {
+        String a = args[arg];
+        if (a.equals("-n") && (arg + 1 < args.length)) {
+          generator.setCharacters(Integer.parseInt(args[++arg]));
+        }
+        else if (a.equals("-first") && (arg + 1 < args.length)) {
+          generator.setFirstCode(Integer.parseInt(args[++arg]));
+        }
+        else if (a.equals("-size") && (arg + 1 < args.length)) {
+          String[] wh = args[++arg].split("x");
+          if (wh.length != 2) usageExit();
+          generator.setSize(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]));
+        }
+        else if (a.equals("-runs") && (arg + 1 < args.length)) {
+          String[] kind = args[++arg].split(":");
+          int r = Arrays.asList(RUNS_NAMES).indexOf(kind[0]);
+          if (r < 0) usageExit();
+          generator.setRuns(r, (kind.length > 1) ? Integer.parseInt(kind[1]) : 8);
+        }
+        else if (a.equals("-specials") && (arg + 1 < args.length)) {
+          generator.setSpecials(Double.parseDouble(args[++arg]));
+        }
+        else if (a.equals("-dpi") && (arg + 1 < args.length)) {
+          generator.setResolution(Integer.parseInt(args[++arg]));
+        }
+        else if (a.equals("-seed") && (arg + 1 < args.length)) {
+          generator.setSeed(Long.parseLong(args[++arg]));
+        }
+        else if (a.equals("-") || (a.charAt(0) != '-')) {
+          output = a;
+        }
+        else usageExit();
+      }
+    }
+    catch (NumberFormatException nfe) {
+      usageExit();
+    }
+    if (output == null) usageExit();
+
+    try {
+      if (output.equals("-")) {
+        generator.write(System.out);
+      }
+      else {
+        OutputStream os = new FileOutputStream(output);
+        try {
+          generator.write(os);
+        }
+        finally {
+          os.close();
+        }
+        System.out.println(output + ": " + generator.characters + " characters, "
+                           + generator.location + " bytes");
+      }
+    }
+    catch (IOException ioe) {
+      System.out.println("fatal: " + ioe.getMessage());
+      System.exit(1);
+    }
+  }
+
+  private static void usageExit() {
+    System.out.println("usage: java GFGenerator [-n count] [-first code] [-size widthxheight]");
+    System.out.println("         [-runs ring|random:mean|checker|solid] [-specials perchar]");
+    System.out.println("         [-dpi resolution] [-seed seed] gffile");
+    System.out.println("gffile may be - for standard output.");
+    System.exit(0);
+  }
+
+}
@@ -0,0 +1,80 @@
+// GFGlyph.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+
+/**
+ * A single decoded character of a generic font: its code, the bounds
+ * given by its boc command, and its pixels.
+ *
+ * @author Richard Blaylock
+ * @see GFFont
+ */
+public class GFGlyph {
+
+  int characterCode;
+  int minM, maxM, minN, maxN;
+  GlyphBitmap bitmap;
+
+  GFGlyph(int characterCode, int minM, int maxM, int minN, int maxN, GlyphBitmap bitmap) {
+    this.characterCode = characterCode;
+    this.minM = minM;
+    this.maxM = maxM;
+    this.minN = minN;
+    this.maxN = maxN;
+    this.bitmap = bitmap;
+  }
+
+  public int getCharacterCode() {
+    return characterCode;
+  }
+
+  public int getMinM() {
+    return minM;
+  }
+
+  public int getMaxM() {
+    return maxM;
+  }
+
+  public int getMinN() {
+    return minN;
+  }
+
+  public int getMaxN() {
+    return maxN;
+  }
+
+  /**
+   * The pixels of the character, with row 0 at max n and column 0 at
+   * min m.  The bitmap may be shared with other users of the same
+   * GFFont, so it must not be changed.
+   */
+  public GlyphBitmap getBitmap() {
+    return bitmap;
+  }
+
+}
@@ -0,0 +1,640 @@
+// GFIndex.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * A persistent index of the characters in a collection of generic font
+ * files, telling which file, and where in it, holds a given character
+ * of a given font at a given resolution.
+ * <p>
+ * The index is built from the postambles and boc commands of the fonts,
+ * without decoding any pixels, and is written as a single binary file:
+ * <pre>
+ *   header   "GFIX", version, font count, file count, entry count,
+ *            shadowed entry count, and the offsets of the tables below
+ *   entries  fixed-size records, sorted by font, resolution and code:
+ *            font number, dpi, code, file number, byte offset of the
+ *            boc command, min m, max m, min n, max n
+ *   shadowed records of the same kind for the characters that lost
+ *            to the same character in an earlier file, sorted by file
+ *   fonts    the font names, sorted
+ *   files    for each file: its path, modification time, length,
+ *            check sum, the range of entries its entries lie in, the
+ *            number of characters it holds, and the range of its
+ *            shadowed entries
+ * </pre>
+ * Looking a character up maps the file into memory and does a binary
+ * search of the entries, so nothing is read but the records compared.
+ * When an index is rebuilt, a font file whose modification time and
+ * length are unchanged keeps the entries it had, shadowed ones
+ * included, so that they can win once the file that shadowed them
+ * has gone; every other file is scanned again.  The check sum is not enough to go by, since it only
+ * covers the widths: a font whose shapes have changed keeps it.
+ *
+ * @author Richard Blaylock
+ * @see GFMetrics
+ */
+public class GFIndex {
+
+  static final int MAGIC = 0x47464958; // "GFIX"
+  static final int VERSION = 2;
+  static final int HEADER_SIZE = 40;
+  static final int ENTRY_SIZE = 36;
+
+  /** font file names, such as cmr10.600gf */
+  static final Pattern GF_NAME = Pattern.compile("(.*)\\.([0-9]+)gf");
+
+  ByteBuffer buffer;
+  int entryCount;
+  int entriesOffset;
+  int shadowedOffset;
+  String[] fonts;
+  String[] files;
+
+  /**
+   * The location of a character, as found in an index.
+   */
+  public static class Entry {
+    String font;
+    int dpi;
+    int characterCode;
+    String file;
+    int offset;
+    int minM, maxM, minN, maxN;
+
+    public String getFont() {
+      return font;
+    }
+
+    public int getDPI() {
+      return dpi;
+    }
+
+    public int getCharacterCode() {
+      return characterCode;
+    }
+
+    /**
+     * @return the path of the GF file that holds the character
+     */
+    public String getFile() {
+      return file;
+    }
+
+    /**
+     * @return the byte offset of the character's boc command
+     */
+    public int getOffset() {
+      return offset;
+    }
+
+    public int getMinM() {
+      return minM;
+    }
+
+    public int getMaxM() {
+      return maxM;
+    }
+
+    public int getMinN() {
+      return minN;
+    }
+
+    public int getMaxN() {
+      return maxN;
+    }
+
+    public String toString() {
+      return font + " " + dpi + " " + characterCode + ": " + file + " at byte " + offset +
+        ", m " + minM + ".." + maxM + ", n " + minN + ".." + maxN;
+    }
+  }
+
+  /**
+   * What an index records about one font file while it is being built.
+   */
+  static class FileRecord {
+    String path;
+    long modified;
+    long length;
+    int checkSum;
+    String font;
+    int dpi;
+
+    // code, offset, min m, max m, min n, max n of each character
+    int[] characters = new int[0];
+    int count;
+  }
+
+  /**
+   * Opens an index, mapping it into memory.
+   *
+   * @param indexFile the index file
+   */
+  public GFIndex(File indexFile) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+    try {
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+    }
+    finally {
+      raf.close();
+    }
+    if ((buffer.limit() < HEADER_SIZE) || (buffer.getInt(0) != MAGIC)) {
+      throw new IOException(indexFile + " is not a GF index");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException(indexFile + " is version " + buffer.getInt(4) + " of the GF index format, not " + VERSION);
+    }
+    fonts = new String[buffer.getInt(8)];
+    files = new String[buffer.getInt(12)];
+    entryCount = buffer.getInt(16);
+    entriesOffset = HEADER_SIZE;
+    shadowedOffset = buffer.getInt(36);
+
+    DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer, buffer.getInt(20)));
+    for (int i = 0; i < fonts.length; i++) {
+      fonts[i] = in.readUTF();
+    }
+    in = new DataInputStream(new ByteBufferInputStream(buffer, buffer.getInt(24)));
+    for (int i = 0; i < files.length; i++) {
+      files[i] = in.readUTF();
+      in.skipBytes(8 + 8 + 4 + 4 + 4 + 4 + 4 + 4);
+    }
+  }
+
+  /**
+   * @return the number of characters in the index
+   */
+  public int size() {
+    return entryCount;
+  }
+
+  /**
+   * Finds a character by binary search.
+   *
+   * @param font the name of the font, such as cmr10
+   * @param dpi the resolution, in dots per inch
+   * @param code the character code
+   * @return where the character is, or null if it is not in the index
+   */
+  public Entry lookup(String font, int dpi, int code) {
+    int f = Arrays.binarySearch(fonts, font);
+    if (f < 0) return null;
+
+    int low = 0;
+    int high = entryCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int at = entriesOffset + mid * ENTRY_SIZE;
+      int c = compare(buffer.getInt(at), buffer.getInt(at + 4), buffer.getInt(at + 8), f, dpi, code);
+      if (c < 0) low = mid + 1;
+      else if (c > 0) high = mid - 1;
+      else return entry(at);
+    }
+    return null;
+  }
+
+  private Entry entry(int at) {
+    Entry e = new Entry();
+    e.font = fonts[buffer.getInt(at)];
+    e.dpi = buffer.getInt(at + 4);
+    e.characterCode = buffer.getInt(at + 8);
+    e.file = files[buffer.getInt(at + 12)];
+    e.offset = buffer.getInt(at + 16);
+    e.minM = buffer.getInt(at + 20);
+    e.maxM = buffer.getInt(at + 24);
+    e.minN = buffer.getInt(at + 28);
+    e.maxN = buffer.getInt(at + 32);
+    return e;
+  }
+
+  private static int compare(int font1, int dpi1, int code1, int font2, int dpi2, int code2) {
+    if (font1 != font2) return (font1 < font2) ? -1 : 1;
+    if (dpi1 != dpi2) return (dpi1 < dpi2) ? -1 : 1;
+    if (code1 != code2) return (code1 < code2) ? -1 : 1;
+    return 0;
+  }
+
+  /**
+   * Reads an InputStream's worth of bytes from a buffer, starting at a
+   * given position, without disturbing the buffer's own position.
+   */
+  static class ByteBufferInputStream extends InputStream {
+    ByteBuffer buffer;
+    int pos;
+
+    ByteBufferInputStream(ByteBuffer buffer, int pos) {
+      this.buffer = buffer;
+      this.pos = pos;
+    }
+
+    public int read() {
+      if (pos >= buffer.limit()) return -1;
+      return buffer.get(pos++) & 0xff;
+    }
+  }
+
+  /**
+   * Builds an index of every GF file under the given directories, or
+   * brings an existing index up to date.
+   *
+   * @param indexFile the index file, which is replaced
+   * @param roots the GF files and directories to index
+   * @param log where to print a summary
+   * @return whether every file could be indexed
+   */
+  public static boolean build(File indexFile, List<File> roots, PrintStream log) throws IOException {
+    // what the old index knew, by path
+    HashMap<String,FileRecord> old = new HashMap<String,FileRecord>();
+    if (indexFile.exists()) {
+      try {
+        for (FileRecord r : readRecords(indexFile)) {
+          old.put(r.path, r);
+        }
+      }
+      catch (IOException ioe) {
+        log.println("! ignoring old index: " + ioe.getMessage());
+      }
+    }
+
+    TreeSet<String> paths = new TreeSet<String>();
+    boolean ok = true;
+    for (File root : roots) {
+      if (root.isDirectory()) {
+        if (!findFonts(root.toPath(), paths, log)) ok = false;
+      }
+      else {
+        paths.add(root.toPath().toAbsolutePath().normalize().toString());
+      }
+    }
+
+    ArrayList<FileRecord> records = new ArrayList<FileRecord>();
+    int reused = 0;
+    int scanned = 0;
+    for (String path : paths) {
+      File f = new File(path);
+      FileRecord previous = old.get(path);
+      try {
+        if ((previous != null) && (previous.modified == f.lastModified()) &&
+            (previous.length == f.length())) {
+          records.add(previous);
+          reused++;
+          continue;
+        }
+        GFFile gfFile = new GFFile(path);
+        try {
+          GFMetrics metrics = GFMetrics.read(gfFile);
+          records.add(scan(path, f, gfFile, metrics));
+          scanned++;
+        }
+        finally {
+          gfFile.close();
+        }
+      }
+      catch (FileNotFoundException fnfe) {
+        log.println("! could not open " + fnfe.getMessage());
+        ok = false;
+      }
+      catch (GFFileFormatException gfffe) {
+        log.println("! bad GF file " + path + ": " + gfffe.getMessage());
+        ok = false;
+      }
+      catch (IOException ioe) {
+        log.println("! could not read " + path + ": " + ioe.getMessage());
+        ok = false;
+      }
+    }
+
+    int entries = write(indexFile, records);
+    log.println("Indexed " + records.size() + " font file" + ((records.size() != 1) ? "s" : "") +
+                " (" + scanned + " scanned, " + reused + " unchanged), " + entries +
+                " character" + ((entries != 1) ? "s" : "") + ".");
+    return ok;
+  }
+
+  /**
+   * Adds the paths of the GF files under a directory.  A directory that
+   * cannot be read is reported and passed over.
+   *
+   * @return whether every directory could be read
+   */
+  static boolean findFonts(Path root, final Set<String> paths, final PrintStream log) throws IOException {
+    final boolean[] ok = {true};
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+        public FileVisitResult visitFile(Path p, BasicFileAttributes attributes) {
+          if (attributes.isRegularFile() && GF2GIFBatch.GF_NAME.matcher(p.getFileName().toString()).matches()) {
+            paths.add(p.toAbsolutePath().normalize().toString());
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        public FileVisitResult visitFileFailed(Path p, IOException ioe) {
+          log.println("! could not read " + p + ": " + ioe.getMessage());
+          ok[0] = false;
+          return FileVisitResult.CONTINUE;
+        }
+
+        public FileVisitResult postVisitDirectory(Path p, IOException ioe) {
+          if (ioe != null) {
+            log.println("! could not read " + p + ": " + ioe.getMessage());
+            ok[0] = false;
+          }
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    return ok[0];
+  }
+
+  /**
+   * Reads the boc command of every character of a font.
+   */
+  static FileRecord scan(String path, File f, GFFile gfFile, GFMetrics metrics) throws GFFileFormatException, IOException {
+    FileRecord r = new FileRecord();
+    r.path = path;
+    r.modified = f.lastModified();
+    r.length = f.length();
+    r.checkSum = metrics.getCheckSum();
+
+    Matcher m = GF_NAME.matcher(f.getName());
+    if (m.matches()) {
+      r.font = m.group(1);
+      r.dpi = Integer.parseInt(m.group(2));
+    }
+    else {
+      // pixels per point, times points per inch
+      r.font = f.getName();
+      int dot = r.font.lastIndexOf('.');
+      if (dot > 0) r.font = r.font.substring(0, dot);
+      r.dpi = (int)Math.round(metrics.getHPPP() / 65536.0 * 72.27);
+    }
+
+    long[] pointers = gfFile.getCharacterPointers();
+    CommandCursor c = new CommandCursor();
+    // a later character with the same code replaces an earlier one
+    LinkedHashMap<Integer,int[]> byCode = new LinkedHashMap<Integer,int[]>();
+    for (int i = 0; i < pointers.length; i++) {
+      gfFile.seek(pointers[i]);
+      gfFile.readCommand(c);
+      byCode.put(Integer.valueOf(c.getCharacterCode()),
+                 new int[] {c.getCharacterCode(), (int)pointers[i],
+                            c.getMinM(), c.getMaxM(), c.getMinN(), c.getMaxN()});
+    }
+    r.characters = new int[6 * byCode.size()];
+    for (int[] ch : byCode.values()) {
+      System.arraycopy(ch, 0, r.characters, 6 * r.count, 6);
+      r.count++;
+    }
+    return r;
+  }
+
+  /**
+   * Reads back the file records, with their characters, of an index.
+   */
+  static ArrayList<FileRecord> readRecords(File indexFile) throws IOException {
+    GFIndex index = new GFIndex(indexFile);
+    ByteBuffer b = index.buffer;
+    ArrayList<FileRecord> records = new ArrayList<FileRecord>();
+    DataInputStream in = new DataInputStream(new ByteBufferInputStream(b, b.getInt(24)));
+    for (int i = 0; i < index.files.length; i++) {
+      FileRecord r = new FileRecord();
+      r.path = in.readUTF();
+      r.modified = in.readLong();
+      r.length = in.readLong();
+      r.checkSum = in.readInt();
+      int first = in.readInt();
+      int span = in.readInt();
+      int held = in.readInt();
+      int firstShadowed = in.readInt();
+      int shadowed = in.readInt();
+      r.characters = new int[6 * held];
+      for (int k = first; k < first + span; k++) {
+        readCharacter(index, r, index.entriesOffset + k * ENTRY_SIZE, i, held);
+      }
+      for (int k = firstShadowed; k < firstShadowed + shadowed; k++) {
+        readCharacter(index, r, index.shadowedOffset + k * ENTRY_SIZE, i, held);
+      }
+      if (r.count != held) {
+        // the index does not agree with itself, so the file will have
+        // to be scanned again
+        r.modified = -1;
+        r.checkSum = 0;
+      }
+      records.add(r);
+    }
+    return records;
+  }
+
+  /**
+   * Adds the entry at the given position to a file record, if it is
+   * one of that file's and the record has room for it.
+   */
+  private static void readCharacter(GFIndex index, FileRecord r, int at, int fileId, int held) {
+    if ((index.buffer.getInt(at + 12) != fileId) || (r.count == held)) return;
+    Entry e = index.entry(at);
+    r.font = e.font;
+    r.dpi = e.dpi;
+    int[] ch = {e.characterCode, e.offset, e.minM, e.maxM, e.minN, e.maxN};
+    System.arraycopy(ch, 0, r.characters, 6 * r.count, 6);
+    r.count++;
+  }
+
+  /**
+   * Writes an index of the given files, which are in order of path.
+   * When two files hold the same character of the same font, the
+   * first one wins.
+   *
+   * @return the number of entries written
+   */
+  static int write(File indexFile, ArrayList<FileRecord> records) throws IOException {
+    TreeSet<String> fontSet = new TreeSet<String>();
+    for (FileRecord r : records) {
+      if (r.count > 0) fontSet.add(r.font);
+    }
+    String[] fonts = fontSet.toArray(new String[0]);
+
+    // font, dpi, code, file, offset, bbox
+    int total = 0;
+    for (FileRecord r : records) total = total + r.count;
+    final int[][] rows = new int[total][];
+    int n = 0;
+    for (int fileId = 0; fileId < records.size(); fileId++) {
+      FileRecord r = records.get(fileId);
+      int font = Arrays.binarySearch(fonts, r.font);
+      for (int k = 0; k < r.count; k++) {
+        int[] ch = r.characters;
+        rows[n++] = new int[] {font, r.dpi, ch[6 * k], fileId, ch[6 * k + 1],
+                               ch[6 * k + 2], ch[6 * k + 3], ch[6 * k + 4], ch[6 * k + 5]};
+      }
+    }
+    // stable, so the first file stays first among equals
+    Arrays.sort(rows, new Comparator<int[]>() {
+        public int compare(int[] a, int[] b) {
+          return GFIndex.compare(a[0], a[1], a[2], b[0], b[1], b[2]);
+        }
+      });
+    int distinct = 0;
+    // the characters that lose are kept, in order of file, so that a
+    // rebuild need not scan their files again
+    ArrayList<int[]> losers = new ArrayList<int[]>();
+    for (int i = 0; i < total; i++) {
+      if ((distinct == 0) || (compare(rows[i][0], rows[i][1], rows[i][2],
+                                      rows[distinct - 1][0], rows[distinct - 1][1], rows[distinct - 1][2]) != 0)) {
+        rows[distinct++] = rows[i];
+      }
+      else losers.add(rows[i]);
+    }
+    Collections.sort(losers, new Comparator<int[]>() {
+        public int compare(int[] a, int[] b) {
+          return Integer.compare(a[3], b[3]);
+        }
+      });
+
+    // the entries of a file lie between its first and last, mixed only
+    // with those of other files of the same font and resolution
+    int[] first = new int[records.size()];
+    int[] span = new int[records.size()];
+    Arrays.fill(first, -1);
+    for (int i = 0; i < distinct; i++) {
+      int fileId = rows[i][3];
+      if (first[fileId] < 0) first[fileId] = i;
+      span[fileId] = i - first[fileId] + 1;
+    }
+    int[] firstShadowed = new int[records.size()];
+    int[] shadowed = new int[records.size()];
+    for (int i = losers.size() - 1; i >= 0; i--) {
+      int fileId = losers.get(i)[3];
+      firstShadowed[fileId] = i;
+      shadowed[fileId]++;
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(fonts.length);
+    out.writeInt(records.size());
+    out.writeInt(distinct);
+    out.writeInt(0);  // font table, filled in below
+    out.writeInt(0);  // file table
+    out.writeInt(HEADER_SIZE);
+    out.writeInt(losers.size());
+    out.writeInt(HEADER_SIZE + distinct * ENTRY_SIZE);
+    for (int i = 0; i < distinct; i++) {
+      for (int k = 0; k < 9; k++) {
+        out.writeInt(rows[i][k]);
+      }
+    }
+    for (int[] row : losers) {
+      for (int k = 0; k < 9; k++) {
+        out.writeInt(row[k]);
+      }
+    }
+    int fontTable = out.size();
+    for (int i = 0; i < fonts.length; i++) {
+      out.writeUTF(fonts[i]);
+    }
+    int fileTable = out.size();
+    for (int i = 0; i < records.size(); i++) {
+      FileRecord r = records.get(i);
+      out.writeUTF(r.path);
+      out.writeLong(r.modified);
+      out.writeLong(r.length);
+      out.writeInt(r.checkSum);
+      out.writeInt(Math.max(first[i], 0));
+      out.writeInt(span[i]);
+      out.writeInt(r.count);
+      out.writeInt(firstShadowed[i]);
+      out.writeInt(shadowed[i]);
+    }
+    out.flush();
+    byte[] b = bytes.toByteArray();
+    ByteBuffer.wrap(b).putInt(20, fontTable).putInt(24, fileTable);
+
+    // write beside the old index, then replace it, so that a reader
+    // never maps a half-written index
+    File temp = new File(indexFile.getPath() + ".tmp");
+    FileOutputStream fos = new FileOutputStream(temp);
+    try {
+      fos.write(b);
+    }
+    finally {
+      fos.close();
+    }
+    Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return distinct;
+  }
+
+  public static void main(String args[]) {
+    if ((args.length >= 5) && args[0].equals("-lookup")) {
+      try {
+        GFIndex index = new GFIndex(new File(args[1]));
+        Entry e = index.lookup(args[2], Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+        if (e == null) {
+          System.out.println("not found");
+          System.exit(1);
+        }
+        System.out.println(e);
+      }
+      catch (NumberFormatException nfe) {
+        usageExit();
+      }
+      catch (IOException ioe) {
+        System.out.println("fatal: " + ioe.getMessage());
+        System.exit(1);
+      }
+      return;
+    }
+    if ((args.length < 2) || (args[0].charAt(0) == '-')) usageExit();
+
+    ArrayList<File> roots = new ArrayList<File>();
+    for (int arg = 1; arg < args.length; arg++) {
+      roots.add(new File(args[arg]));
+    }
+    try {
+      boolean ok = build(new File(args[0]), roots, System.out);
+      System.exit(ok ? 0 : 1);
+    }
+    catch (IOException ioe) {
+      System.out.println("fatal: " + ioe.getMessage());
+      System.exit(1);
+    }
+  }
+
+  private static void usageExit() {
+    System.out.println("usage: java GFIndex indexfile gffile-or-directory...");
+    System.out.println("       java GFIndex -lookup indexfile font dpi code");
+    System.exit(0);
+  }
+
+}
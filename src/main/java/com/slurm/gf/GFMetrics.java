@@ -0,0 +1,247 @@
+// GFMetrics.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * The metrics of a generic font, as given by its postamble: the
+ * design size, check sum, resolution and overall bounds from the post
+ * command, and the escapement, width and location of each character
+ * from the char_loc commands.
+ * <p>
+ * read() goes straight to the postamble and decodes nothing else, so
+ * the time it takes depends on the number of characters in the font,
+ * not on the size of the file.
+ *
+ * @author Richard Blaylock
+ * @see GFFont
+ */
+public class GFMetrics {
+
+  int postLocation;
+  int specialPointer;
+  int designSize;
+  int checkSum;
+  int hppp;
+  int vppp;
+  int minM, maxM, minN, maxN;
+
+  // the char_loc commands, in the order they occur
+  int count;
+  int[] residues;
+  int[] dx;
+  int[] dy;
+  int[] widths;
+  int[] pointers;
+
+  /** for each residue, its index in the arrays above, or -1 */
+  int[] index = new int[256];
+
+  GFMetrics() {
+    Arrays.fill(index, -1);
+  }
+
+  /**
+   * Reads the metrics of a font from its postamble.  The source is
+   * left where it was.
+   *
+   * @param source the font, which must be able to seek to its postamble
+   */
+  public static GFMetrics read(GFSource source) throws GFFileFormatException, IOException {
+    GFMetrics retVal = new GFMetrics();
+    long savePos = source.getFilePointer();
+
+    int postLoc = source.findPostLoc();
+    source.seek(postLoc);
+    CommandCursor c = new CommandCursor();
+    if (source.readCommand(c) != Command.POST) {
+      throw new GFFileFormatException("command at " + postLoc + " is not post");
+    }
+    retVal.postLocation = postLoc;
+    retVal.specialPointer = c.getPostSpecialPointer();
+    retVal.designSize = c.getDesignSize();
+    retVal.checkSum = c.getCheckSum();
+    retVal.hppp = c.getHPPP();
+    retVal.vppp = c.getVPPP();
+    retVal.minM = c.getMinM();
+    retVal.maxM = c.getMaxM();
+    retVal.minN = c.getMinN();
+    retVal.maxN = c.getMaxN();
+
+    int size = 32;
+    int[] residues = new int[size];
+    int[] dx = new int[size];
+    int[] dy = new int[size];
+    int[] widths = new int[size];
+    int[] pointers = new int[size];
+    int count = 0;
+    int o;
+    do {
+      o = source.readCommand(c);
+      if ((o == Command.CHAR_LOC) || (o == Command.CHAR_LOC0)) {
+        if (count == size) {
+          size = 2 * size;
+          residues = Arrays.copyOf(residues, size);
+          dx = Arrays.copyOf(dx, size);
+          dy = Arrays.copyOf(dy, size);
+          widths = Arrays.copyOf(widths, size);
+          pointers = Arrays.copyOf(pointers, size);
+        }
+        int r = c.getCharacterResidue() & 0xff;
+        residues[count] = r;
+        dx[count] = c.getDX();
+        dy[count] = c.getDY();
+        widths[count] = c.getWidth();
+        pointers[count] = c.getBeginPointer();
+        retVal.index[r] = count;
+        count++;
+      }
+    } while ((o == Command.CHAR_LOC) || (o == Command.CHAR_LOC0) || (o == Command.NO_OP));
+    if (o != Command.POST_POST) {
+      throw new GFFileFormatException("byte " + c.getLocation() + " should be postpost");
+    }
+
+    retVal.count = count;
+    retVal.residues = Arrays.copyOf(residues, count);
+    retVal.dx = Arrays.copyOf(dx, count);
+    retVal.dy = Arrays.copyOf(dy, count);
+    retVal.widths = Arrays.copyOf(widths, count);
+    retVal.pointers = Arrays.copyOf(pointers, count);
+
+    source.seek(savePos);
+    return retVal;
+  }
+
+  /**
+   * @return the byte offset of the post command
+   */
+  public int getPostLocation() {
+    return postLocation;
+  }
+
+  /**
+   * @return the pointer in the post command to the byte that follows
+   * the last character, where any specials before the postamble start
+   */
+  public int getPostSpecialPointer() {
+    return specialPointer;
+  }
+
+  /**
+   * @return the design size, in units of 2<sup>-20</sup> points
+   */
+  public int getDesignSize() {
+    return designSize;
+  }
+
+  public int getCheckSum() {
+    return checkSum;
+  }
+
+  /**
+   * @return the horizontal pixels per point, as a scaled integer
+   */
+  public int getHPPP() {
+    return hppp;
+  }
+
+  /**
+   * @return the vertical pixels per point, as a scaled integer
+   */
+  public int getVPPP() {
+    return vppp;
+  }
+
+  public int getMinM() {
+    return minM;
+  }
+
+  public int getMaxM() {
+    return maxM;
+  }
+
+  public int getMinN() {
+    return minN;
+  }
+
+  public int getMaxN() {
+    return maxN;
+  }
+
+  /**
+   * @return the number of char_loc commands, which are numbered from 0
+   * in the order they occur
+   */
+  public int getCharLocCount() {
+    return count;
+  }
+
+  /**
+   * @return the number of the char_loc command for the given residue
+   * (character code modulo 256), or -1 if there is none
+   */
+  public int indexOf(int residue) {
+    return index[residue & 0xff];
+  }
+
+  public int getCharacterResidue(int i) {
+    return residues[i];
+  }
+
+  /**
+   * @return the horizontal escapement of the i'th character, as a
+   * scaled number of pixels
+   */
+  public int getDX(int i) {
+    return dx[i];
+  }
+
+  /**
+   * @return the vertical escapement of the i'th character, as a
+   * scaled number of pixels
+   */
+  public int getDY(int i) {
+    return dy[i];
+  }
+
+  /**
+   * @return the width of the i'th character, in units of 2<sup>-20</sup>
+   * times the design size
+   */
+  public int getWidth(int i) {
+    return widths[i];
+  }
+
+  /**
+   * @return the byte offset that the i'th char_loc command points at
+   */
+  public int getBeginPointer(int i) {
+    return pointers[i];
+  }
+
+}
@@ -26,6 +26,7 @@
 
 package com.slurm.gf;
 import java.io.*;
+import java.util.Arrays;
 
 /**
  * Class to parse a generic font file.
@@ -43,13 +44,73 @@ public class GFParser {
   /**
    * The file from which to read commands. 
    */
-  GFFile gffile;
+  GFSource gffile;
 
   /**
    * The set of callback functions that determine what happens when
    * the different .gf commands are encountered.
    */
-  GFParserCallback callback;
+  GFEventCallback callback;
+
+  /**
+   * The command most recently read, reused for every command in
+   * the file.
+   */
+  CommandCursor cursor = new CommandCursor();
+
+  /**
+   * The callback again, if it wants its paint commands a row at a time,
+   * and null otherwise.
+   */
+  GFRowCallback rowCallback;
+
+  // the row, column and paint color within the current character,
+  // kept up to date for the benefit of rowCallback
+  int row;
+  int column;
+  boolean black;
+
+  /**
+   * The run lengths of the current paint sequence.
+   */
+  int[] runs = new int[64];
+
+  /**
+   * The kinds of optional command the callback wants, as
+   * GFSelectiveCallback.WANTS_ constants.
+   */
+  int interests = GFSelectiveCallback.WANTS_ALL;
+
+  /**
+   * The position of the source when the bytes read were last added to
+   * the ConversionMetrics.
+   */
+  long recorded;
+
+  /**
+   * Where the stack traces of errors that end the parse are printed.
+   */
+  PrintStream err = System.err;
+
+  /**
+   * Creates a GFParser object that reads commands from the given
+   * file and calls the methods of the given GFEventCallback
+   * object according to the commands that are encountered.
+   *
+   * @param g the file from which to read commands
+   * @param c the callback functions to execute when encountering commands
+   * @see GFSource
+   * @see GFEventCallback
+   */
+  public GFParser(GFSource g, GFEventCallback c) {
+    gffile = g;
+    callback = c;
+    if (c instanceof GFRowCallback) rowCallback = (GFRowCallback)c;
+    if (c instanceof GFSelectiveCallback) {
+      interests = ((GFSelectiveCallback)c).getInterests();
+      cursor.interests = interests;
+    }
+  }
 
   /**
    * Creates a GFParser object that reads commands from the given
@@ -58,29 +119,124 @@ public class GFParser {
    *
    * @param g the file from which to read commands
    * @param c the callback functions to execute when encountering commands
-   * @see GFFile
+   * @see GFSource
    * @see GFParserCallback
    */
-  public GFParser(GFFile g, GFParserCallback c) {
+  public GFParser(GFSource g, GFParserCallback c) {
     gffile = g;
-    callback = c;
+    callback = new GFParserCallbackAdapter(c, cursor);
+  }
+
+  /**
+   * Creates a GFParser object that reads commands, strictly forward,
+   * from the given stream.
+   *
+   * @param in the stream from which to read commands
+   * @param c the callback functions to execute when encountering commands
+   * @see GFStreamSource
+   */
+  public GFParser(InputStream in, GFEventCallback c) {
+    this(new GFStreamSource(in), c);
+  }
+
+  /**
+   * Creates a GFParser object that reads commands, strictly forward,
+   * from the given stream.
+   *
+   * @param in the stream from which to read commands
+   * @param c the callback functions to execute when encountering commands
+   * @see GFStreamSource
+   */
+  public GFParser(InputStream in, GFParserCallback c) {
+    this(new GFStreamSource(in), c);
+  }
+
+  /**
+   * Prints the stack traces of errors that end the parse to the given
+   * stream instead of standard error.
+   */
+  public void setErrorOutput(PrintStream err) {
+    this.err = err;
   }
 
   /**
    * Parses the file, calling methods of the callback as it goes.
    */
   public void parse() {
+    recorded = filePointer();
     try {
       // module 66
       processPreamble();
-      Command post = processAllCharacters();
-      processPostamble(post);
+      if (processAllCharacters()) processPostamble();
+    }
+    catch (GFFileFormatException gffe) {
+      gffe.printStackTrace(err);
+    }
+    finally {
+      recordMetrics();
+    }
+  }
+
+  /**
+   * Parses just the character whose boc command is at the given byte
+   * offset, such as one found by GFSource.getCharacterPointers, calling
+   * methods of the callback as it goes.  Characters parsed this way may
+   * be parsed in any order, and by as many parsers as there are
+   * threads, each with its own source and callback.
+   *
+   * @param pointer the byte offset of the boc command
+   */
+  public void parseCharacter(long pointer) {
+    recorded = pointer;
+    try {
+      parseCharacterCommands(pointer);
+    }
+    finally {
+      recordMetrics();
+    }
+  }
+
+  private void parseCharacterCommands(long pointer) {
+    try {
+      gffile.seek(pointer);
+      int o = passNoOpCommands();
+      if ((o != Command.BOC) && (o != Command.BOC1)) {
+        callback.badGF("byte " + pointer + " is not boc (" + o + ")");
+      }
+      fire();
+      if (!doChar()) callback.badGF("char ended unexpectedly");
     }
     catch (GFFileFormatException gffe) {
-      gffe.printStackTrace();
+      gffe.printStackTrace(err);
+    }
+    catch (IOException ioe) {
+      ioe.printStackTrace(err);
+    }
+  }
+
+  /**
+   * @return the position of the source, or 0 if it cannot say
+   */
+  private long filePointer() {
+    try {
+      return gffile.getFilePointer();
+    }
+    catch (IOException ioe) {
+      return 0;
     }
   }
 
+  /**
+   * Adds the bytes read and the commands decoded since the last call
+   * to the ConversionMetrics.
+   */
+  private void recordMetrics() {
+    long p = filePointer();
+    ConversionMetrics.BYTES_READ.add(Math.max(0, p - recorded));
+    recorded = p;
+    ConversionMetrics.recordCommands(cursor);
+  }
+
   /**
    * Process the preamble of the GF file.
    * The preamble, which comes at the beginning of every GF file,
@@ -90,109 +246,119 @@ public class GFParser {
    * Those remaining k bytes typically represent a commentary string.
    */
   private void processPreamble() throws GFFileFormatException {
-    PreCommand pre = null;
-
     // module 68
-    Command c = gffile.readCommand();
-    if (c.getOpCode() != Command.PRE) {
+    gffile.readCommand(cursor);
+    if (cursor.getOpCode() != Command.PRE) {
       callback.badGF("First byte isn't start of preamble!");
     }
-    try {
-      pre = (PreCommand) c;
-      int id = pre.getIDByte();
+    else {
+      int id = cursor.getIDByte();
       if (id != Command.GF_ID_BYTE) {
         callback.badGF("identification byte should be " + Command.GF_ID_BYTE +
                        " not " + id);
       }
-      callback.handlePreCommand(pre);
-    }
-    catch (ClassCastException cce) {
-      // this should never happen
-      cce.printStackTrace();
+      fire();
     }
   }
 
   /**
-   * Parses the individual characters in the file.
-   * returns the PostCommand that follows the last character.
+   * Parses the individual characters in the file, leaving the
+   * PostCommand that follows the last character in the cursor.
    *
-   * @return the Post command that follows the last character
+   * @return whether the post command was reached
    */
-  private Command processAllCharacters() throws GFFileFormatException {
-    Command c;
-    // we initialize c here just to satisfy the compiler
-    c = new NoOpCommand(0, 0);
+  private boolean processAllCharacters() throws GFFileFormatException {
     int o;
 
     try {
       // module 69
       do {
         callback.startSpecialCommands((int)gffile.getFilePointer());
-        c = passNoOpCommands();
-        o = c.getOpCode();
+        o = passNoOpCommands();
         if (o != Command.POST) {
           if ((o != Command.BOC) && (o != Command.BOC1)) {
             callback.badGF("byte " +
-                           c.getLocation() +
+                           cursor.getLocation() +
                            " is not boc (" + o + ")");
+            return false;
           }
-          callback.handleBOCCommand((BOCCommand)c);
+          fire();
           if (!doChar()) callback.badGF("char ended unexpectedly");
+          // so that the metrics keep up with a long font
+          recordMetrics();
         }
       } while (o != Command.POST);
     }
-    catch (ClassCastException cce) {
-      cce.printStackTrace();
-    }
     catch (IOException ioe) {
-      ioe.printStackTrace();
+      ioe.printStackTrace(err);
+      return false;
     }
 
-    return c;
+    return true;
   }
 
   /**
    * Passes commands until finding one that is not a NoOp,
    * XXX, or YYY.
    *
-   * @return the first Command found that is not a NoOp, XXX, or YYY.
+   * @return the opcode of the first command found that is not a
+   * NoOp, XXX, or YYY.
    */
-  private Command passNoOpCommands() throws GFFileFormatException {
-    Command c;
+  private int passNoOpCommands() throws GFFileFormatException {
     int o;
 
     // module 70
     do {
-      c = gffile.readCommand();
-      o = c.getOpCode();
+      o = gffile.readCommand(cursor);
       if ((o == Command.YYY) ||
           ((Command.XXX1 <= o) && (o <= Command.XXX4)) ||
           (o == Command.NO_OP)) {
-        callback.handleCommand(c);
+        fire();
         o = Command.NO_OP;
       }
     } while (o == Command.NO_OP);
 
-    return c;
+    return o;
   }
 
   /**
-   * Handles a sequence of Paint commands.
-   * 
-   * @param first the first Paint command in the sequence.
+   * Handles a sequence of Paint commands, the first of which is
+   * already in the cursor.  Leaves the command that follows the
+   * sequence in the cursor.
    */
-  private Command readPaintSequence(Command first) throws GFFileFormatException {
-    Command c = first;
-    try {
-      do {
-        callback.handlePaintCommand((PaintCommand)c);
-        c = gffile.readCommand(); 
-      } while (c.getOpCode() <= Command.PAINT3);
+  private void readPaintSequence() throws GFFileFormatException {
+    if (rowCallback != null) {
+      readPaintRow();
+      return;
     }
-    catch (ClassCastException cce) {
-      cce.printStackTrace();
-    }
-    return c;
+    do {
+      callback.paint(cursor.numPixels);
+    } while (gffile.readCommand(cursor) <= Command.PAINT3);
+  }
+
+  /**
+   * Collects a sequence of Paint commands, the first of which is
+   * already in the cursor, and passes them to the row callback all at
+   * once.  Leaves the command that follows the sequence in the cursor.
+   */
+  private void readPaintRow() throws GFFileFormatException {
+    int[] r = runs;
+    int count = 0;
+    int startColumn = column;
+    boolean startBlack = black;
+
+    do {
+      if (count == r.length) {
+        r = Arrays.copyOf(r, 2 * count);
+        runs = r;
+      }
+      int p = cursor.numPixels;
+      r[count++] = p;
+      column = column + p;
+    } while (gffile.readCommand(cursor) <= Command.PAINT3);
+
+    if ((count & 1) != 0) black = !black;
+    rowCallback.paintRow(row, startColumn, startBlack, r, count);
   }
 
   /**
@@ -208,12 +374,10 @@ public class GFParser {
       boolean foundEOC;
       foundEOC = false;
 
-      Command c;
       int o;
       int a;
       while (!foundEOC) {
-        c = gffile.readCommand();
-        o = c.getOpCode();
+        o = gffile.readCommand(cursor);
 
         // module 50
         if (gffile.eof()) {
@@ -221,39 +385,48 @@ public class GFParser {
         }
 
         // module 51
-        if (o <= Command.PAINT3) c = readPaintSequence(c);
+        if (o <= Command.PAINT3) readPaintSequence();
 
-        o = c.getOpCode();
-        a = c.getLocation();
+        o = cursor.getOpCode();
+        a = cursor.getLocation();
 
+        switch (Command.KIND[o]) {
         // module 52
-        if (o == Command.PRE) {
+        case Command.KIND_PRE:
           charError(a, "preamble command within a character!");
-        }
-        else if ((o == Command.POST) || (o == Command.POST_POST)) {
+          break;
+        case Command.KIND_POST:
+        case Command.KIND_POST_POST:
           charError(a, "postamble command within a character!");
-        }
-        else if ((o == Command.BOC) || (o == Command.BOC1)) {
+          break;
+        case Command.KIND_BOC:
+        case Command.KIND_BOC1:
           charError(a, "boc occurred before eoc!");
-        }
+          break;
 
         // module 51
-        else if ((o == Command.CHAR_LOC) || (o == Command.CHAR_LOC0)) {
+        case Command.KIND_CHAR_LOC:
+        case Command.KIND_CHAR_LOC0:
           // this is technically incorrect but we are trying
           // to be consistent with the .web implementation of gftype
           error(a, "undefined command " + o + "!");
-        }
-        else if (o > Command.POST_POST) {
+          break;
+        case Command.KIND_UNDEFINED:
           error(a, "undefined command " + o + "!");
-        }
+          break;
 
         // module 52
-        else if (o == Command.EOC) foundEOC = true;
+        case Command.KIND_EOC:
+          foundEOC = true;
+          break;
+        default:
+          break;
+        }
 
         // modules 51 (for skip, new_row, xxx, and yyy commands)
         // if we got this far without a GFBadCharException then
         // this command must be okay
-        callback.handleCommand(c);
+        fire();
       }
     }
     catch (GFBadCharException gfbce) {
@@ -264,50 +437,50 @@ public class GFParser {
 
   /**
    * Process the postamble of the GF file.
-   * The postamble consists of a Post command, followed by a set
-   * of CharLoc commands (one for each character in the file), followed
-   * in turn by a PostPost command to wrap things up.
+   * The postamble consists of a Post command (which is already in the
+   * cursor), followed by a set of CharLoc commands (one for each
+   * character in the file), followed in turn by a PostPost command to
+   * wrap things up.
    */
-  private void processPostamble(Command post) throws GFFileFormatException {
+  private void processPostamble() throws GFFileFormatException {
     try {
-      callback.handlePostCommand((PostCommand)post);
-      int postLoc = post.getLocation();
+      int postLoc = cursor.getLocation();
+      fire();
 
-      Command c;
       int o;
 
       // module 65
       // process char locs in the postamble
       do {
-        c = gffile.readCommand();
-        o = c.getOpCode();
+        o = gffile.readCommand(cursor);
         if ((o == Command.CHAR_LOC) || (o == Command.CHAR_LOC0)) {
-          callback.handleCharLocCommand((CharLocCommand)c);
+          fire();
           // set o just to have a chance to get out of the loop.
           // note that legitimate NoOpCommands in this part
           // of the file will be lost (as they are by
-          // the original gftype), since we don't call callback.handleCommand
+          // the original gftype), since we don't call fire()
           // for them.
           o = Command.NO_OP;
         }
       } while (o == Command.NO_OP);
 
       // module 64
+      int postPostLoc = cursor.getLocation();
       if (o != Command.POST_POST) {
-        error(c.getLocation(), "should be postpost!");
+        error(postPostLoc, "should be postpost!");
+        return;
       }
-      PostPostCommand postpost = (PostPostCommand)c;
-      callback.handlePostPostCommand(postpost);
-      int q = postpost.getPostLoc();
+      fire();
+      int q = cursor.getPostLoc();
       if (q != postLoc) {
-        error(postpost.getLocation(),
+        error(postPostLoc,
                        "postamble pointer should be " + postLoc +
                        " not " + q + "!");
       }
 
       int m = gffile.readByteAsInt();
       if (m != Command.GF_ID_BYTE) {
-        error(postpost.getLocation(),
+        error(postPostLoc,
                        "identification byte should be " + Command.GF_ID_BYTE +
                        ", not " + m + "!");
       }
@@ -323,19 +496,97 @@ public class GFParser {
                        " should be " + Command.GF_POST_SIG);
       }
       else if (gffile.getFilePointer() < k + 4) {
-        error(postpost.getLocation(),
+        error(postPostLoc,
               "not enough signature bytes at end of file!");
       }
 
     }
-    catch (ClassCastException cce) {
-      // shouldn't happen
-      cce.printStackTrace();
-    }
     catch (IOException ioe) {
-      ioe.printStackTrace();
+      ioe.printStackTrace(err);
+    }
+
+  }
+
+  /**
+   * Passes the command in the cursor to the callback method that
+   * corresponds to its opcode.
+   */
+  private void fire() {
+    CommandCursor c = cursor;
+    int o = c.opcode;
+    int loc = c.location;
+
+    switch (Command.KIND[o]) {
+    case Command.KIND_PAINT:
+      callback.paint(c.numPixels);
+      break;
+    case Command.KIND_NEW_ROW:
+      fireNewRow(c);
+      break;
+    case Command.KIND_SKIP:
+      fireSkip(c);
+      break;
+    case Command.KIND_EOC:
+      callback.eoc(loc);
+      break;
+    case Command.KIND_BOC:
+    case Command.KIND_BOC1:
+      fireBOC(c);
+      break;
+    case Command.KIND_XXX:
+      if ((interests & GFSelectiveCallback.WANTS_XXX) != 0)
+        callback.xxx(loc, c.bytes, c.xlength);
+      break;
+    case Command.KIND_YYY:
+      if ((interests & GFSelectiveCallback.WANTS_YYY) != 0)
+        callback.yyy(loc, c.getYYYValue());
+      break;
+    case Command.KIND_NO_OP:
+      if ((interests & GFSelectiveCallback.WANTS_NO_OP) != 0)
+        callback.noOp(loc);
+      break;
+    case Command.KIND_CHAR_LOC:
+    case Command.KIND_CHAR_LOC0:
+      if ((interests & GFSelectiveCallback.WANTS_CHAR_LOC) != 0)
+        callback.charLoc(loc, c.characterResidue, c.dx, c.dy, c.width,
+                         c.beginPointer);
+      break;
+    case Command.KIND_PRE:
+      callback.pre(loc, c.idByte, c.bytes, c.byteCount);
+      break;
+    case Command.KIND_POST:
+      callback.post(loc, c.postSpecialPointer, c.designSize, c.checkSum,
+                    c.hppp, c.vppp, c.minM, c.maxM, c.minN, c.maxN);
+      break;
+    case Command.KIND_POST_POST:
+      callback.postPost(loc, c.postLoc);
+      break;
+    default:
+      callback.undefined(loc, o);
+      break;
     }
+  }
+
+  private void fireNewRow(CommandCursor c) {
+    row++;
+    column = c.offset;
+    black = true;
+    callback.newRow(c.location, c.offset);
+  }
+
+  private void fireSkip(CommandCursor c) {
+    row = row + c.rows;
+    column = 0;
+    black = false;
+    callback.skip(c.location, c.opcode, c.rows);
+  }
 
+  private void fireBOC(CommandCursor c) {
+    row = 0;
+    column = 0;
+    black = false;
+    callback.boc(c.location, c.characterCode, c.previousCharacterPointer,
+                 c.minM, c.maxM, c.minN, c.maxN);
   }
 
   /**
@@ -34,10 +34,14 @@ package com.slurm.gf;
  * are defined in the original
  * <a href="http://www.tug.org/web2c/manual/web2c_10.html#SEC67">gftype</a>
  * program.
+ * <p>
+ * Callbacks that have no need to keep Command objects around can
+ * implement GFEventCallback instead, whose methods take the parameters
+ * of each command as primitives.
  *
  * @author Richard Blaylock
  * @see GFParser
- * @see GFFile
+ * @see GFEventCallback
  */
 public abstract class GFParserCallback {
 
@@ -123,50 +127,22 @@ public abstract class GFParserCallback {
   public abstract void handleUndefinedCommand(UndefinedCommand c);
 
   /**
-   * respond to an arbitrary command, based on its opcode
+   * respond to the command that the parser has just decoded into the
+   * given cursor.  The cursor is reused for the next command, so it
+   * must not be kept.  By default this creates the Command object
+   * corresponding to the cursor and passes it to handleCommand;
+   * subclasses that have no use for Command objects can override it
+   * to read the parameters straight out of the cursor instead.
+   */
+  protected void handleCommand(CommandCursor c) {
+    handleCommand(c.toCommand());
+  }
+
+  /**
+   * respond to an arbitrary command, by passing it to the handler for
+   * its class
    */
   protected final void handleCommand(Command c) {
-    int o = c.getOpCode();
-    try {
-      if ((Command.PAINT_0 <= o) && (o <= Command.PAINT3))
-        handlePaintCommand((PaintCommand)c);
-      else
-      if ((o == Command.BOC) || (o == Command.BOC1))
-        handleBOCCommand((BOCCommand)c);
-      else
-      if (o == Command.EOC)
-        handleEOCCommand((EOCCommand)c);
-      else
-      if ((Command.SKIP0 <= o) && (o <= Command.SKIP3))
-        handleSkipCommand((SkipCommand)c);
-      else
-      if ((Command.NEW_ROW_0 <= o) && (o <= Command.NEW_ROW_164))
-        handleNewRowCommand((NewRowCommand)c);
-      else
-      if ((Command.XXX1 <= o) && (o <= Command.XXX4))
-        handleXXXCommand((XXXCommand)c);
-      else
-      if (o == Command.YYY)
-        handleYYYCommand((YYYCommand)c);
-      else
-      if ((o == Command.CHAR_LOC) || (o == Command.CHAR_LOC0))
-        handleCharLocCommand((CharLocCommand)c);
-      else
-      if (o == Command.PRE)
-        handlePreCommand((PreCommand)c);
-      else
-      if (o == Command.POST)
-        handlePostCommand((PostCommand)c);
-      else
-      if (o == Command.POST_POST)
-        handlePostPostCommand((PostPostCommand)c);
-      else
-        handleUndefinedCommand((UndefinedCommand)c);
-    }
-    catch (ClassCastException cce) {
-      // shouldn't happen...
-      cce.printStackTrace();
-    }
-  
+    c.accept(this);
   }
 }
@@ -0,0 +1,116 @@
+// GFParserCallbackAdapter.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+
+/**
+ * Lets a GFParser drive a GFParserCallback through the GFEventCallback
+ * interface.  Every event is passed on as the parser's current
+ * CommandCursor, so the callback sees exactly the commands (opcodes,
+ * locations and all) that are in the file.
+ *
+ * @author Richard Blaylock
+ */
+class GFParserCallbackAdapter implements GFEventCallback {
+
+  GFParserCallback callback;
+
+  /** the parser's cursor, which always holds the current command */
+  CommandCursor cursor;
+
+  GFParserCallbackAdapter(GFParserCallback callback, CommandCursor cursor) {
+    this.callback = callback;
+    this.cursor = cursor;
+  }
+
+  public void badGF(String msg) throws GFFileFormatException {
+    callback.badGF(msg);
+  }
+
+  public void error(int label, String msg) {
+    callback.error(label, msg);
+  }
+
+  public void startSpecialCommands(int location) {
+    callback.startSpecialCommands(location);
+  }
+
+  public void paint(int run) {
+    callback.handleCommand(cursor);
+  }
+
+  public void boc(int location, int code, int previousPointer,
+                  int minM, int maxM, int minN, int maxN) {
+    callback.handleCommand(cursor);
+  }
+
+  public void eoc(int location) {
+    callback.handleCommand(cursor);
+  }
+
+  public void skip(int location, int opcode, int rows) {
+    callback.handleCommand(cursor);
+  }
+
+  public void newRow(int location, int offset) {
+    callback.handleCommand(cursor);
+  }
+
+  public void xxx(int location, int[] bytes, int length) {
+    callback.handleCommand(cursor);
+  }
+
+  public void yyy(int location, int value) {
+    callback.handleCommand(cursor);
+  }
+
+  public void noOp(int location) {
+    callback.handleCommand(cursor);
+  }
+
+  public void charLoc(int location, int residue, int dx, int dy,
+                      int width, int pointer) {
+    callback.handleCommand(cursor);
+  }
+
+  public void pre(int location, int id, int[] comment, int length) {
+    callback.handleCommand(cursor);
+  }
+
+  public void post(int location, int specialPointer, int designSize, int checkSum,
+                   int hppp, int vppp, int minM, int maxM, int minN, int maxN) {
+    callback.handleCommand(cursor);
+  }
+
+  public void postPost(int location, int postLoc) {
+    callback.handleCommand(cursor);
+  }
+
+  public void undefined(int location, int opcode) {
+    callback.handleCommand(cursor);
+  }
+
+}
@@ -0,0 +1,59 @@
+// GFRowCallback.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+
+/**
+ * A GFEventCallback that would rather receive the paint commands of a
+ * character a row at a time than one run at a time.
+ * <p>
+ * When a GFParser is given a callback that implements this interface,
+ * it keeps track of the current row, column and paint color itself,
+ * collects each sequence of consecutive paint commands into an array
+ * of run lengths, and calls paintRow instead of paint.  A sequence
+ * normally covers an entire row; a special command in the middle of
+ * a row splits it into more than one call.
+ *
+ * @author Richard Blaylock
+ * @see GFParser
+ */
+public interface GFRowCallback extends GFEventCallback {
+
+  /**
+   * respond to a sequence of paint commands within a single row
+   *
+   * @param row the row being painted, counting from 0 at the top
+   * (max n) of the character
+   * @param column the column of the first pixel painted, counting from 0
+   * at min m
+   * @param black whether the first run is black (the runs then
+   * alternate between the two colors)
+   * @param runs the lengths of the runs; the array is reused by the parser
+   * @param count the number of runs
+   */
+  void paintRow(int row, int column, boolean black, int[] runs, int count);
+
+}
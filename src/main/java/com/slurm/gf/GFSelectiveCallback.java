@@ -0,0 +1,65 @@
+// GFSelectiveCallback.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+
+/**
+ * A GFEventCallback that does nothing with some kinds of command.
+ * <p>
+ * When a GFParser is given a callback that implements this interface,
+ * it asks once which of the optional kinds of command (specials,
+ * no_ops and char_locs) the callback wants, and never calls it for the
+ * others.  The bytes of unwanted xxx and yyy specials are then skipped
+ * over rather than read, which makes a difference to proof-mode fonts
+ * full of title and label specials.
+ *
+ * @author Richard Blaylock
+ * @see GFParser
+ */
+public interface GFSelectiveCallback extends GFEventCallback {
+
+  /** xxx commands, with their strings */
+  static final int WANTS_XXX = 1;
+
+  /** yyy commands, with their values */
+  static final int WANTS_YYY = 2;
+
+  /** no_op commands */
+  static final int WANTS_NO_OP = 4;
+
+  /** char_loc and char_loc0 commands */
+  static final int WANTS_CHAR_LOC = 8;
+
+  /** every kind of command */
+  static final int WANTS_ALL = WANTS_XXX | WANTS_YYY | WANTS_NO_OP | WANTS_CHAR_LOC;
+
+  /**
+   * @return the kinds of optional command to be passed to this
+   * callback, as WANTS_ constants or'ed together
+   */
+  int getInterests();
+
+}
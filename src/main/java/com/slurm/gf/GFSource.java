@@ -0,0 +1,500 @@
+// GFSource.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Abstract source of the bytes that make up a generic font.
+ * <p>
+ * Concrete subclasses supply the raw byte access (reading, seeking and
+ * testing for end of file); this class builds the multi-byte reads,
+ * the decoding of GF opcodes into Command objects, and the lookup of
+ * the postamble on top of them.
+ *
+ * @author Richard Blaylock
+ * @see GFFile
+ * @see GFParser
+ */
+public abstract class GFSource {
+
+  /**
+   * Reads a single unsigned byte.
+   *
+   * @return the byte read, or -1 if the end of the source was reached
+   */
+  public abstract int read() throws IOException;
+
+  /**
+   * Tests for end of source.
+   *
+   * @return true if there are no more bytes to be read
+   */
+  public abstract boolean eof();
+
+  /**
+   * @return the zero-based byte offset of the next byte to be read
+   */
+  public abstract long getFilePointer() throws IOException;
+
+  /**
+   * Moves to the given zero-based byte offset.
+   *
+   * @param pos the offset of the next byte to be read
+   */
+  public abstract void seek(long pos) throws IOException;
+
+  /**
+   * @return the total number of bytes in the source
+   */
+  public abstract long length() throws IOException;
+
+  /**
+   * Releases any resources held by this source.
+   */
+  public abstract void close() throws IOException;
+
+  /**
+   * Reads a single byte from the source and returns it as an int.
+   *
+   * @return the int value of the byte read, or 0 at end of source
+   */
+  public int readByteAsInt() {
+    // module 24
+    int retVal = 0;
+    if (!eof()) {
+      try {
+        retVal = read();
+      }
+      catch (IOException ioe) {
+        ioe.printStackTrace();
+      }
+    }
+    return retVal;
+  }
+
+  /**
+   * Reads two bytes from the source and interprets them as an int.
+   *
+   * @return the int value of the two bytes read
+   */
+  public int readTwoBytesAsInt() {
+    // module 24
+    int retVal = 0;
+    try {
+      int a = read();
+      int b = read();
+      retVal = (a * 256) + b;
+    }
+    catch (IOException ioe) {
+      ioe.printStackTrace();
+    }
+    return retVal;
+  }
+
+  /**
+   * Reads three bytes from the source and interprets them as an int.
+   *
+   * @return the int value of the three bytes read
+   */
+  public int readThreeBytesAsInt() {
+    // module 24
+    int retVal = 0;
+    try {
+      int a = read();
+      int b = read();
+      int c = read();
+      retVal = (((a * 256) + b) * 256) + c;
+    }
+    catch (IOException ioe) {
+      ioe.printStackTrace();
+    }
+    return retVal;
+  }
+
+  /**
+   * Reads four bytes from the source and interprets them as a
+   * signed int.
+   *
+   * @return the int value of the four bytes read
+   */
+  public int readFourBytesAsInt() {
+    // module 24
+    int retVal = 0;
+    try {
+      int a = read();
+      int b = read();
+      int c = read();
+      int d = read();
+      if (a < 128) retVal = (((((a * 256) + b) * 256) + c) * 256) + d;
+      else retVal = ((((((a - 256) * 256) + b) * 256) + c) * 256) + d;
+    }
+    catch (IOException ioe) {
+      ioe.printStackTrace();
+    }
+    return retVal;
+  }
+
+  /**
+   * Reads a GF opcode and its associated parameters.
+   * The command is decoded into a new CommandCursor and then turned
+   * into the concrete subclass of Command that corresponds to its
+   * opcode.  Parsers that go through every command of a font should
+   * prefer readCommand(CommandCursor), which creates no objects.
+   *
+   * @return a Command object encapsulating the opcode and its parameters
+   * @see Command
+   */
+  public Command readCommand() throws GFFileFormatException {
+    CommandCursor cursor = new CommandCursor();
+    readCommand(cursor);
+    return cursor.toCommand();
+  }
+
+  /**
+   * Reads a GF opcode and its associated parameters into the given
+   * cursor, overwriting whatever command it held before.
+   * The kind of the opcode, looked up in Command.KIND, determines
+   * which fields of the cursor to fill in; the opcodes of each kind
+   * differ only in the width of their operand and the value they
+   * imply by themselves, which are looked up the same way.
+   *
+   * @param c the cursor to fill in
+   * @return the opcode that was read
+   * @see CommandCursor
+   */
+  public int readCommand(CommandCursor c) throws GFFileFormatException {
+    int o = readByteAsInt();
+    int loc = 0;
+    try {
+      loc = (int)getFilePointer() - 1;
+    }
+    catch (IOException ioe) {
+      ioe.printStackTrace();
+    }
+    c.location = loc;
+    c.opcode = o;
+
+    int kind = Command.KIND[o];
+    c.kindCounts[kind]++;
+    switch (kind) {
+    case Command.KIND_PAINT:
+      c.numPixels = Command.IMPLIED[o] + readOperand(Command.OPERAND_WIDTH[o]);
+      break;
+    case Command.KIND_NEW_ROW:
+      c.offset = Command.IMPLIED[o];
+      break;
+    case Command.KIND_SKIP:
+      c.rows = Command.IMPLIED[o] + readOperand(Command.OPERAND_WIDTH[o]);
+      break;
+    case Command.KIND_BOC:
+      readBOC(c);
+      break;
+    case Command.KIND_BOC1:
+      readBOC1(c);
+      break;
+    case Command.KIND_XXX:
+      c.xlength = readOperand(Command.OPERAND_WIDTH[o]);
+      readSpecial(c, c.xlength, GFSelectiveCallback.WANTS_XXX);
+      break;
+    case Command.KIND_YYY:
+      readSpecial(c, 4, GFSelectiveCallback.WANTS_YYY);
+      break;
+    case Command.KIND_CHAR_LOC:
+    case Command.KIND_CHAR_LOC0:
+      readCharLoc(c, o);
+      break;
+    case Command.KIND_PRE:
+      c.idByte = readByteAsInt();
+      readBytes(c, readByteAsInt());
+      break;
+    case Command.KIND_POST:
+      readPost(c);
+      break;
+    case Command.KIND_POST_POST:
+      c.postLoc = readFourBytesAsInt();
+      break;
+    default:
+      // eoc, no_op and undefined opcodes have no parameters
+      break;
+    }
+    return o;
+  }
+
+  /**
+   * Reads the operand of a paint, skip or xxx command.
+   *
+   * @param width the number of bytes in the operand, from 0 to 4
+   * @return the operand, or 0 if width is 0
+   */
+  private int readOperand(int width) {
+    switch (width) {
+    case 0:
+      return 0;
+    case 1:
+      return readByteAsInt();
+    case 2:
+      return readTwoBytesAsInt();
+    case 3:
+      return readThreeBytesAsInt();
+    default:
+      return readFourBytesAsInt();
+    }
+  }
+
+  private void readBOC(CommandCursor c) {
+    c.characterCode = readFourBytesAsInt();
+    c.previousCharacterPointer = readFourBytesAsInt();
+    c.minM = readFourBytesAsInt();
+    c.maxM = readFourBytesAsInt();
+    c.minN = readFourBytesAsInt();
+    c.maxN = readFourBytesAsInt();
+  }
+
+  private void readBOC1(CommandCursor c) {
+    c.characterCode = readByteAsInt();
+    int delM = readByteAsInt();
+    c.maxM = readByteAsInt();
+    int delN = readByteAsInt();
+    c.maxN = readByteAsInt();
+    c.previousCharacterPointer = -1;
+    c.minM = c.maxM - delM;
+    c.minN = c.maxN - delN;
+  }
+
+  /**
+   * Reads the k bytes of an xxx or yyy command into the given cursor,
+   * or skips them if the cursor's interests do not include the given
+   * GFSelectiveCallback.WANTS_ constant.
+   */
+  private void readSpecial(CommandCursor c, int k, int wants) {
+    if ((c.interests & wants) != 0) readBytes(c, k);
+    else {
+      skipBytes(k);
+      c.byteCount = 0;
+    }
+  }
+
+  private void readCharLoc(CommandCursor c, int o) {
+    c.characterResidue = readByteAsInt();
+    if (o == Command.CHAR_LOC) {
+      c.dx = readFourBytesAsInt();
+      c.dy = readFourBytesAsInt();
+    }
+    else {
+      c.dx = 65536 * readByteAsInt();
+      c.dy = 0;
+    }
+    c.width = readFourBytesAsInt();
+    c.beginPointer = readFourBytesAsInt();
+  }
+
+  private void readPost(CommandCursor c) {
+    c.postSpecialPointer = readFourBytesAsInt();
+    c.designSize = readFourBytesAsInt();
+    c.checkSum = readFourBytesAsInt();
+    c.hppp = readFourBytesAsInt();
+    c.vppp = readFourBytesAsInt();
+    c.minM = readFourBytesAsInt();
+    c.maxM = readFourBytesAsInt();
+    c.minN = readFourBytesAsInt();
+    c.maxN = readFourBytesAsInt();
+  }
+
+  /**
+   * Passes over k bytes without looking at them, stopping at the end
+   * of the source.  Subclasses that can simply move their position
+   * should override this.
+   */
+  protected void skipBytes(int k) {
+    try {
+      for (int i = 0; i < k; i++) {
+        if (read() < 0) break;
+      }
+    }
+    catch (IOException ioe) {
+      ioe.printStackTrace();
+    }
+  }
+
+  /**
+   * Reads k special bytes into the given cursor.
+   */
+  private void readBytes(CommandCursor c, int k) {
+    if (k < 0) k = 0;
+    int[] b = c.ensureBytes(k);
+    int i;
+    for (i = 0; i < k; i++) {
+      b[i] = readByteAsInt();
+    }
+    c.byteCount = k;
+  }
+
+  /**
+   * Finds the location of the post command by reading backwards from
+   * the end of the source over the pad bytes and the id byte, and then
+   * reading the postloc value of the postpost command.
+   * Leaves the source positioned somewhere near its end.
+   *
+   * @return the byte offset of the post command
+   */
+  protected int findPostLoc() throws GFFileFormatException, IOException {
+    // go to the end of the file
+    long pos = length() - 1;
+    seek(pos);
+
+    // read backwards over 223's and id byte
+    int b = readByteAsInt();
+    while (b == Command.GF_POST_SIG) {
+      pos--;
+      seek(pos);
+      b = readByteAsInt();
+    }
+    if (b != Command.GF_ID_BYTE) {
+      throw new GFFileFormatException("bad id byte: " + b);
+    }
+
+    // read the postLoc
+    pos = pos - 4;
+    seek(pos);
+    return readFourBytesAsInt();
+  }
+
+  /**
+   * Reads the (hopefully unique) Post command in this source.
+   * <p>
+   * The method used is suggested in (module 19 of) the original
+   * <a href="http://www.tug.org/web2c/manual/web2c_10.html#SEC67">gftype</a>
+   * program:<ul><li>read backwards over pad bytes
+   * until finding the format id byte, and the postpost opcode</li>
+   * <li>back up four bytes and read the postloc value</li>
+   * <li>seek to the postloc and read the post command</li></ul>
+   *
+   * @return the PostCommand at the end of the source
+   */
+  public PostCommand getPostCommand() throws GFFileFormatException {
+    PostCommand retVal = new PostCommand(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    try {
+      // leave a trail of breadcrumbs
+      long savePos = getFilePointer();
+
+      int postLoc = findPostLoc();
+
+      // now we have it
+      seek(postLoc);
+      Command c = readCommand();
+      if (c.getOpCode() != Command.POST) {
+        throw new GFFileFormatException("command at " + postLoc + " is not post");
+      }
+      retVal = (PostCommand)c;
+
+      // go back to wherever we came from
+      seek(savePos);
+    }
+    catch (IOException ioe) {
+      ioe.printStackTrace();
+    }
+    return retVal;
+  }
+
+  /**
+   * Finds the boc command of every character in this source.  The
+   * char_loc commands of the postamble point at the last character
+   * with each residue, and the boc command of each character points
+   * back at the one before it with the same residue, so following
+   * those pointers reaches every character, even one whose code is
+   * shared (modulo 256) with a later character.  A pointer may lead
+   * to special commands that come before the boc command, so they
+   * are passed over.  Leaves the source where it was.
+   *
+   * @return the byte offsets of the boc commands, in the order in
+   * which they occur in the source
+   */
+  public long[] getCharacterPointers() throws GFFileFormatException, IOException {
+    long savePos = getFilePointer();
+
+    int postLoc = findPostLoc();
+    seek(postLoc);
+    CommandCursor c = new CommandCursor();
+    if (readCommand(c) != Command.POST) {
+      throw new GFFileFormatException("command at " + postLoc + " is not post");
+    }
+
+    long[] pointers = new long[16];
+    int count = 0;
+    int o;
+    do {
+      o = readCommand(c);
+      if ((o == Command.CHAR_LOC) || (o == Command.CHAR_LOC0)) {
+        if (count == pointers.length) pointers = Arrays.copyOf(pointers, 2 * count);
+        pointers[count++] = c.getBeginPointer();
+      }
+    } while ((o == Command.CHAR_LOC) || (o == Command.CHAR_LOC0) || (o == Command.NO_OP));
+
+    // follow each chain of back pointers; they must go backwards, so
+    // that a bad file cannot send us round in circles
+    int chainEnd = count;
+    for (int i = 0; i < chainEnd; i++) {
+      int slot = i;
+      long p = pointers[i];
+      while (true) {
+        seek(p);
+        do {
+          o = readCommand(c);
+        } while ((o == Command.NO_OP) || (o == Command.YYY) ||
+                 ((Command.XXX1 <= o) && (o <= Command.XXX4)));
+        if ((o != Command.BOC) && (o != Command.BOC1)) {
+          throw new GFFileFormatException("byte " + p + " does not lead to boc (" + o + ")");
+        }
+        pointers[slot] = c.getLocation();
+        long previous = c.getPreviousCharacterPointer();
+        if (previous < 0) break;
+        if (previous >= pointers[slot]) {
+          throw new GFFileFormatException("back pointer " + previous + " at byte " + p + " does not point backwards");
+        }
+        if (count == pointers.length) pointers = Arrays.copyOf(pointers, 2 * count);
+        slot = count;
+        pointers[count++] = previous;
+        p = previous;
+      }
+    }
+
+    pointers = Arrays.copyOf(pointers, count);
+    Arrays.sort(pointers);
+    int distinct = 0;
+    for (int i = 0; i < count; i++) {
+      if ((distinct == 0) || (pointers[i] != pointers[distinct - 1])) {
+        pointers[distinct++] = pointers[i];
+      }
+    }
+
+    seek(savePos);
+    return Arrays.copyOf(pointers, distinct);
+  }
+
+}
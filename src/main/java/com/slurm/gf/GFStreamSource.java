@@ -0,0 +1,203 @@
+// GFStreamSource.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.io.*;
+
+/**
+ * A forward-only source of generic font bytes, read from any
+ * InputStream (standard input, a pipe, a socket) through an internal
+ * read-ahead buffer.
+ * <p>
+ * Since the stream cannot be rewound, the postamble is not available
+ * until the parser reaches it; see GF2GIFCallback.setHeightsFromPostamble
+ * for one way of coping with that.
+ *
+ * @author Richard Blaylock
+ * @see GFSource
+ * @see GFParser
+ */
+public class GFStreamSource extends GFSource {
+
+  static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  /** the stream from which bytes are read */
+  InputStream in;
+
+  /** the read-ahead buffer */
+  byte[] buf;
+
+  /** index of the next byte to be read from buf */
+  int pos;
+
+  /** number of valid bytes in buf */
+  int limit;
+
+  /** offset in the stream of buf[0] */
+  long base;
+
+  /**
+   * Creates a source that reads from the given stream.
+   *
+   * @param in the stream of generic font bytes
+   */
+  public GFStreamSource(InputStream in) {
+    this(in, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a source that reads from the given stream, with a
+   * read-ahead buffer of the given size.
+   *
+   * @param in the stream of generic font bytes
+   * @param bufferSize the size of the read-ahead buffer
+   */
+  public GFStreamSource(InputStream in, int bufferSize) {
+    this.in = in;
+    buf = new byte[bufferSize];
+    pos = 0;
+    limit = 0;
+    base = 0;
+  }
+
+  /**
+   * Makes sure there is at least one unread byte in the buffer.
+   *
+   * @return false if the stream has ended
+   */
+  private boolean fill() throws IOException {
+    if (pos < limit) return true;
+    base = base + limit;
+    pos = 0;
+    limit = 0;
+    int r;
+    do {
+      r = in.read(buf, 0, buf.length);
+    } while (r == 0);
+    if (r < 0) return false;
+    limit = r;
+    return true;
+  }
+
+  public int read() throws IOException {
+    if (!fill()) return -1;
+    return buf[pos++] & 0xff;
+  }
+
+  /**
+   * Tests for end of stream, reading ahead if necessary.
+   */
+  public boolean eof() {
+    boolean retVal = false;
+    try {
+      retVal = !fill();
+    }
+    catch (IOException ioe) {
+      ioe.printStackTrace();
+      retVal = true;
+    }
+    return retVal;
+  }
+
+  public long getFilePointer() {
+    return base + pos;
+  }
+
+  /**
+   * Skips forward to the given offset.
+   * Seeking backwards is not possible on a stream.
+   */
+  public void seek(long p) throws IOException {
+    long here = getFilePointer();
+    if (p < here) {
+      throw new IOException("cannot seek backwards from " + here + " to " + p);
+    }
+    while (getFilePointer() < p) {
+      if (!fill()) throw new EOFException("cannot seek past end to " + p);
+      pos = pos + (int)Math.min(limit - pos, p - getFilePointer());
+    }
+  }
+
+  /**
+   * Moves forward through the buffer, refilling it as often as
+   * necessary, but not past the end of the stream.
+   */
+  protected void skipBytes(int k) {
+    try {
+      while ((k > 0) && fill()) {
+        int n = Math.min(limit - pos, k);
+        pos = pos + n;
+        k = k - n;
+      }
+    }
+    catch (IOException ioe) {
+      ioe.printStackTrace();
+    }
+  }
+
+  /**
+   * The length of a stream is not known until it has been read.
+   */
+  public long length() throws IOException {
+    throw new IOException("length of a stream is not known");
+  }
+
+  public void close() throws IOException {
+    in.close();
+  }
+
+  public int readTwoBytesAsInt() {
+    if (limit - pos < 2) return super.readTwoBytesAsInt();
+    int a = buf[pos++] & 0xff;
+    int b = buf[pos++] & 0xff;
+    return (a << 8) | b;
+  }
+
+  public int readThreeBytesAsInt() {
+    if (limit - pos < 3) return super.readThreeBytesAsInt();
+    int a = buf[pos++] & 0xff;
+    int b = buf[pos++] & 0xff;
+    int c = buf[pos++] & 0xff;
+    return (a << 16) | (b << 8) | c;
+  }
+
+  public int readFourBytesAsInt() {
+    if (limit - pos < 4) return super.readFourBytesAsInt();
+    int a = buf[pos++];
+    int b = buf[pos++] & 0xff;
+    int c = buf[pos++] & 0xff;
+    int d = buf[pos++] & 0xff;
+    return (a << 24) | (b << 16) | (c << 8) | d;
+  }
+
+  /**
+   * The postamble of a stream cannot be reached ahead of time.
+   */
+  protected int findPostLoc() throws GFFileFormatException {
+    throw new GFFileFormatException("cannot look ahead to the postamble of a stream");
+  }
+
+}
@@ -41,6 +41,7 @@ public class GFType {
 
   static boolean wantsMnemonics;
   static boolean wantsPixels;
+  static boolean wantsMetrics;
 
   public static void main(String args[]) {
 
@@ -48,10 +49,12 @@ public class GFType {
 
     wantsMnemonics = false;
     wantsPixels = false;
+    wantsMetrics = false;
 
     for (int arg = 0; arg < args.length; arg++) {
       if (args[arg].equals("-m")) wantsMnemonics = true;
       else if (args[arg].equals("-p")) wantsPixels = true;
+      else if (args[arg].equals("-metrics")) wantsMetrics = true;
       else if (args[arg].charAt(0) == '-') {
         System.out.println("unknown flag " + args[arg]);
         System.exit(0);
@@ -60,13 +63,18 @@ public class GFType {
     }
 
     if (gfFileName.equals("")) {
-      System.out.println("usage: java [-m] [-p] GFfile");
+      System.out.println("usage: java [-m] [-p] [-metrics] GFfile");
       System.exit(0);
     }
 
     // module 3
     System.out.println(BANNER);
 
+    if (wantsMetrics) {
+      printMetrics(gfFileName);
+      return;
+    }
+
     // module 66
     try {
       System.out.println("Options selected: Mnemonic output = " +
@@ -89,6 +97,56 @@ public class GFType {
       System.out.println("fatal: gf file `" + gfFileName + "' not found.");
       System.exit(0);
     }
+  }
+
+  /**
+   * Prints just the postamble, in the same form as the full output,
+   * without reading any of the characters.
+   */
+  static void printMetrics(String gfFileName) {
+    try {
+      GFFile gfInputFile = new GFFile(gfFileName);
+      GFMetrics metrics = GFMetrics.read(gfInputFile);
+      gfInputFile.close();
+
+      // module 61
+      int ds = metrics.getDesignSize();
+      int hppp = metrics.getHPPP();
+      int postLoc = metrics.getPostLocation();
+      System.out.print("Postamble starts at byte " + postLoc);
+      if (metrics.getPostSpecialPointer() == postLoc) System.out.println(".");
+      else {
+        System.out.print(", after special info at byte ");
+        System.out.println(metrics.getPostSpecialPointer() + ".");
+      }
+      System.out.println("design size = " + ds + " (" + new Scaled(ds / 16) + "pt)");
+      System.out.println("check sum = " + metrics.getCheckSum());
+      System.out.println("hppp = " + hppp + " (" + new Scaled(hppp) + ")");
+      System.out.println("vppp = " + metrics.getVPPP() + " (" + new Scaled(metrics.getVPPP()) + ")");
+      System.out.println("min m = " + metrics.getMinM() + ", max m = " + metrics.getMaxM());
+      System.out.println("min n = " + metrics.getMinN() + ", max n = " + metrics.getMaxN());
+
+      // module 65
+      float pixRatio = ((float)ds/1048576)*((float)hppp/1048576);
+      for (int i = 0; i < metrics.getCharLocCount(); i++) {
+        int v = metrics.getDY(i);
+        int width = metrics.getWidth(i);
+        System.out.print("Character " + metrics.getCharacterResidue(i) +
+                         ": dx " + metrics.getDX(i) + " (" + new Scaled(metrics.getDX(i)));
+        if (v != 0) {
+          System.out.print("), dy " + v + " (" + new Scaled(v));
+        }
+        System.out.print("), width " + width + " (" + new Scaled(java.lang.Math.round(width * pixRatio)));
+        System.out.println("), loc " + metrics.getBeginPointer(i));
+      }
+    }
+    catch (FileNotFoundException fnfe) {
+      System.out.println("fatal: gf file `" + gfFileName + "' not found.");
+      System.exit(0);
+    }
+    catch (GFFileFormatException gfffe) {
+      System.out.println("Bad GF file: " + gfffe.getMessage() + "!");
+    }
     catch (IOException ioe) {
       ioe.printStackTrace();
     }
@@ -27,14 +27,14 @@
 package com.slurm.gf;
 
 /**
- * This implemenation of GFParserCallback responds to generic font
+ * This implemenation of GFEventCallback responds to generic font
  * commands in such a way as to reproduce the behavior of the original
  * <a href="http://www.tug.org/web2c/manual/web2c_10.html#SEC67">gftype</a>
  * program.
  *
  * @author Richard Blaylock
  */
-public class GFTypeCallback extends GFParserCallback {
+public class GFTypeCallback implements GFEventCallback {
 
 // Comments of the form "module nn" refer to the module number in
 // the original gftype program that corresponds to the given code.
@@ -136,9 +136,8 @@ public class GFTypeCallback extends GFParserCallback {
     gfPrevPtr = loc;
   }
 
-  public void handlePaintCommand(PaintCommand paint) {
+  public void paint(int p) {
     int l, r;
-    int p = paint.getNumPixels();
 
     // module 56
     if ((wantsMnemonics) && (!inPaintSequence)) {
@@ -175,23 +174,21 @@ public class GFTypeCallback extends GFParserCallback {
     inPaintSequence = true;
   }
 
-  public void handleBOCCommand(BOCCommand boc) {
+  public void boc(int location, int characterCode, int p,
+                  int minM, int maxM, int minN, int maxN) {
     // module 71
     totalChars++;
 
-    int characterCode = boc.getCharacterCode();
     int c = characterCode % 256;
     if (c < 0) c = c + 256;
 
-    int p = boc.getPreviousCharacterPointer();
-
-    minMStated = boc.getMinM();
-    maxMStated = boc.getMaxM();
-    minNStated = boc.getMinN();
-    maxNStated = boc.getMaxN();
+    minMStated = minM;
+    maxMStated = maxM;
+    minNStated = minN;
+    maxNStated = maxN;
 
     System.out.println();
-    System.out.print(boc.getLocation() + ": beginning of char " + c);
+    System.out.print(location + ": beginning of char " + c);
     if (characterCode != c)
       System.out.println(" with extension " + ((characterCode -c) / 256));
     if (wantsMnemonics) {
@@ -201,7 +198,7 @@ public class GFTypeCallback extends GFParserCallback {
     maxMObserved = -1;
 
     if (charPtr[c] != p) {
-      error(boc.getLocation(),
+      error(location,
             "(previous character pointer should be " + charPtr[c] +
             ", not " + p + "!");
     }
@@ -221,9 +218,9 @@ public class GFTypeCallback extends GFParserCallback {
     inPaintSequence = false;
   }
 
-  public void handleEOCCommand(EOCCommand eoc) {
+  public void eoc(int location) {
     // module 52
-    showMnemonic(eoc, "eoc");
+    showMnemonic(location, "eoc");
     System.out.println();
 
     // module 69
@@ -250,11 +247,10 @@ public class GFTypeCallback extends GFParserCallback {
   }
 
   // module 60
-  public void handleSkipCommand(SkipCommand skip) {
-    int p = skip.getRows() - 1;
-    int o = skip.getOpCode();
+  public void skip(int location, int o, int rows) {
+    int p = rows - 1;
 
-    showMnemonic(skip, "skip" + ((o - Command.SKIP1 + 1) % 4) + " " + p);
+    showMnemonic(location, "skip" + ((o - Command.SKIP1 + 1) % 4) + " " + p);
     n = n + p + 1;
     m = 0;
     paintSwitch = WHITE;
@@ -266,9 +262,8 @@ public class GFTypeCallback extends GFParserCallback {
   }
 
   // module 59
-  public void handleNewRowCommand(NewRowCommand newRow) {
-    int p = newRow.getOffset();
-    showMnemonic(newRow, "newrow " + p);
+  public void newRow(int location, int p) {
+    showMnemonic(location, "newrow " + p);
     n++;
     m = p;
     paintSwitch = BLACK;
@@ -280,12 +275,11 @@ public class GFTypeCallback extends GFParserCallback {
   }
 
   // module 53
-  public void handleXXXCommand(XXXCommand xxx) {
-    showMnemonic(xxx, "xxx '");
-    int len = xxx.getXLength();
-    int xbytes[] = xxx.getXBytes();
+  public void xxx(int location, int xbytes[], int xlength) {
+    showMnemonic(location, "xxx '");
+    int len = xlength;
 
-    if (len < 0) nlError(xxx, "string of negative length!");
+    if (len < 0) nlError(location, "string of negative length!");
 
     // module 54
     boolean badChar = false;
@@ -293,7 +287,7 @@ public class GFTypeCallback extends GFParserCallback {
     int qByte;
 
     StringBuffer sb = new StringBuffer();
-    for (len = 0; len < xbytes.length; len++) {
+    for (len = 0; len < xlength; len++) {
       qByte = xbytes[len];
       if ((qByte < (int)' ') || (qByte > (int)'~')) badChar = true;
       sb.append((char)qByte);
@@ -301,42 +295,32 @@ public class GFTypeCallback extends GFParserCallback {
     sb.append("'");
 
     if (wantsMnemonics) System.out.print(sb.toString());
-    if (badChar) nlError(xxx, "non-ASCII character in xxx command!");
+    if (badChar) nlError(location, "non-ASCII character in xxx command!");
 
     inPaintSequence = false;
   }
 
   // module 55
-  public void handleYYYCommand(YYYCommand yyy) {
-    int[] yb = yyy.getYBytes();
-    int p = 0;
-
-    if (yb[0] < 128) p = (((((yb[0] * 256) + yb[1]) * 256) + yb[2]) * 256) + yb[3];
-    else p = ((((((yb[0] - 256) * 256) + yb[1]) * 256) + yb[2]) * 256) + yb[3];
+  public void yyy(int location, int p) {
     Scaled s = new Scaled(p);
     // module 55
-    showMnemonic(yyy, "yyy " + p + " (");
+    showMnemonic(location, "yyy " + p + " (");
     if (wantsMnemonics) System.out.print(s + ")");
     inPaintSequence = false;
   }
 
-  public void handleNoOpCommand(NoOpCommand noop) {
+  public void noOp(int location) {
     // module 52
-    showMnemonic(noop, "noop ");
+    showMnemonic(location, "noop ");
 
     inPaintSequence = false;
   }
 
-  public void handleCharLocCommand(CharLocCommand charLoc) {
+  public void charLoc(int location, int c, int u, int v, int width, int p) {
     // module 65
-    int c = charLoc.getCharacterResidue();
-    int u = charLoc.getDX();
-    int v = charLoc.getDY();
     Scaled uScaled = new Scaled(u);
-    int width = charLoc.getWidth();
     Scaled wScaled = new Scaled(java.lang.Math.round(width * pixRatio));
-    int p = charLoc.getBeginPointer();
-    
+
 
     System.out.print("Character " + c + ": dx " + u + " (" + uScaled);
     if (v != 0) {
@@ -347,10 +331,10 @@ public class GFTypeCallback extends GFParserCallback {
     System.out.println("), loc " + p);
 
     if (charPtr[c] == 0) {
-      error(charLoc.getLocation(), "duplicate locator for this character!");
+      error(location, "duplicate locator for this character!");
     }
     else if (p != charPtr[c]) {
-      error(charLoc.getLocation(), "character location should be " +
+      error(location, "character location should be " +
             charPtr[c] + "!");
     }
     charPtr[c] = 0;
@@ -358,9 +342,7 @@ public class GFTypeCallback extends GFParserCallback {
     inPaintSequence = false;
   }
 
-  public void handlePreCommand(PreCommand c) {
-    int[] commentBytes = c.getCommentBytes();
-    int len = commentBytes.length;
+  public void pre(int location, int id, int[] commentBytes, int len) {
     StringBuffer csBuffer = new StringBuffer(len);
     int i;
     for (i = 0; i < len; i++) {
@@ -370,26 +352,16 @@ public class GFTypeCallback extends GFParserCallback {
     inPaintSequence = false;
   }
 
-  public void handlePostCommand(PostCommand post) {
+  public void post(int postLoc, int p, int ds, int cs, int hppp, int vppp,
+                   int minM, int maxM, int minN, int maxN) {
     // module 62
-    int ds = post.getDesignSize();
-    int cs = post.getCheckSum();
-    int hppp = post.getHPPP();
-    int vppp = post.getVPPP();
-
-    int p = post.getPostSpecialPointer();
     Scaled dsScaled = new Scaled(ds / 16);
     Scaled hpppScaled = new Scaled(hppp);
     Scaled vpppScaled = new Scaled(vppp);
-    int minM = post.getMinM();
-    int maxM = post.getMaxM();
-    int minN = post.getMinN();
-    int maxN = post.getMaxN();
 
     // module 66
     System.out.println();
     // module 61
-    int postLoc = post.getLocation();
     System.out.print("Postamble starts at byte " + postLoc);
     if (postLoc == gfPrevPtr) System.out.println(".");
     else {
@@ -411,19 +383,19 @@ public class GFTypeCallback extends GFParserCallback {
     inPaintSequence = false;
   }
 
-  public void handlePostPostCommand(PostPostCommand postpost) {
+  public void postPost(int location, int postLoc) {
     // module 64
     for (int k = 0; k < 256; k++) {
       if (charPtr[k] > 0) {
-        error(postpost.getLocation(), "missing locator for character " + k + "!");
+        error(location, "missing locator for character " + k + "!");
       }
     }
 
     inPaintSequence = false;
   }
 
-  public void handleUndefinedCommand(UndefinedCommand c) {
-    System.out.println("undefined: " + c.getOpCode());
+  public void undefined(int location, int opcode) {
+    System.out.println("undefined: " + opcode);
     inPaintSequence = false;
   }
 
@@ -440,10 +412,10 @@ public class GFTypeCallback extends GFParserCallback {
   }
 
   // module 50
-  void showMnemonic(Command c, String s) {
+  void showMnemonic(int label, String s) {
     if (wantsMnemonics) {
       System.out.println();
-      showLabel(c.getLocation(), s);
+      showLabel(label, s);
     }
   }
 
@@ -454,9 +426,9 @@ public class GFTypeCallback extends GFParserCallback {
   }
 
   // module 50
-  public void nlError(Command c, String s) {
+  public void nlError(int label, String s) {
     System.out.println();
-    showLabel(c.getLocation(), "! " + s);
+    showLabel(label, "! " + s);
     System.out.println();
   }
 
@@ -0,0 +1,316 @@
+// GIFEncoder.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.io.*;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+
+/**
+ * Encoder for two-color GIF images, such as the character images
+ * made by GF2GIFCallback.
+ * <p>
+ * Since every pixel is either index 0 (background) or index 1
+ * (foreground), the LZW string table is a binary tree that can be
+ * searched with two array lookups per pixel, and the minimum code size
+ * is 2.  Images are written a row at a time, with pixels packed into
+ * longs exactly as in a GlyphBitmap, into a byte buffer that is reused
+ * from one image to the next.
+ *
+ * @author Richard Blaylock
+ * @see GF2GIFCallback
+ */
+public class GIFEncoder {
+
+  static final int MIN_CODE_SIZE = 2;
+  static final int CLEAR_CODE = 1 << MIN_CODE_SIZE;
+  static final int END_CODE = CLEAR_CODE + 1;
+  static final int FIRST_CODE = CLEAR_CODE + 2;
+  static final int MAX_CODE_SIZE = 12;
+  static final int TABLE_SIZE = 1 << MAX_CODE_SIZE;
+
+  // the color table and transparent index, written into every image
+  byte[] palette;
+  int transparentIndex;
+
+  // the image being encoded
+  int width;
+  int height;
+
+  /** the encoded bytes */
+  byte[] buf = new byte[4096];
+  int size;
+
+  // the string table: child0[c] and child1[c] are the codes of the
+  // strings made by appending a 0 or a 1 pixel to the string of code c
+  int[] child0 = new int[TABLE_SIZE];
+  int[] child1 = new int[TABLE_SIZE];
+  int nextCode;
+  int codeSize;
+
+  /** the code of the longest string matched so far, or -1 */
+  int prefix;
+
+  // bits not yet written out
+  long bitBuffer;
+  int bitCount;
+
+  // the current data sub-block
+  byte[] block = new byte[255];
+  int blockSize;
+
+  /**
+   * Creates an encoder for images with the given two-entry color model.
+   *
+   * @param colorModel index 0 is the background and index 1 the foreground;
+   * its transparent pixel, if any, is marked transparent in the GIF
+   */
+  public GIFEncoder(IndexColorModel colorModel) {
+    palette = new byte[6];
+    for (int i = 0; i < 2; i++) {
+      palette[3 * i] = (byte)colorModel.getRed(i);
+      palette[3 * i + 1] = (byte)colorModel.getGreen(i);
+      palette[3 * i + 2] = (byte)colorModel.getBlue(i);
+    }
+    transparentIndex = colorModel.getTransparentPixel();
+  }
+
+  /**
+   * @return the number of bytes in the most recently encoded image
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * The buffer holding the most recently encoded image in its first
+   * size() bytes.  It is reused by the next image.
+   */
+  public byte[] getBuffer() {
+    return buf;
+  }
+
+  /**
+   * Writes the most recently encoded image to the given stream.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(buf, 0, size);
+  }
+
+  /**
+   * Encodes a whole character, with the given number of blank rows
+   * above it and enough below it to make up the given height.
+   *
+   * @param glyph the pixels of the character
+   * @param top the number of blank rows above the character
+   * @param imageHeight the height of the image
+   */
+  public void encode(GlyphBitmap glyph, int top, int imageHeight) {
+    startImage(glyph.getWidth(), imageHeight);
+    writeBlankRows(top);
+    int rows = glyph.getHeight();
+    int stride = glyph.getWordsPerRow();
+    long[] words = glyph.getWords();
+    for (int y = 0; y < rows; y++) {
+      writeRow(words, y * stride);
+    }
+    writeBlankRows(imageHeight - top - rows);
+    finishImage();
+  }
+
+  /**
+   * Starts a new image, discarding the previous one, and writes
+   * everything that comes before its pixels.
+   *
+   * @param width the width of the image
+   * @param height the height of the image
+   */
+  public void startImage(int width, int height) {
+    this.width = width;
+    this.height = height;
+    size = 0;
+
+    // header and logical screen descriptor, with a two-entry
+    // global color table
+    put('G'); put('I'); put('F'); put('8'); put('9'); put('a');
+    putShort(width);
+    putShort(height);
+    put(0x80);
+    put(0);
+    put(0);
+    for (int i = 0; i < palette.length; i++) {
+      put(palette[i]);
+    }
+
+    // graphic control extension, only needed for transparency
+    if (transparentIndex >= 0) {
+      put(0x21); put(0xf9); put(4);
+      put(1);
+      putShort(0);
+      put(transparentIndex);
+      put(0);
+    }
+
+    // image descriptor
+    put(0x2c);
+    putShort(0);
+    putShort(0);
+    putShort(width);
+    putShort(height);
+    put(0);
+
+    put(MIN_CODE_SIZE);
+    bitBuffer = 0;
+    bitCount = 0;
+    blockSize = 0;
+    clearTable();
+    emit(CLEAR_CODE);
+    prefix = -1;
+  }
+
+  /**
+   * Writes one row of pixels.
+   *
+   * @param words the pixels of the row, packed as in a GlyphBitmap
+   * @param offset the index in words of the row's first long
+   */
+  public void writeRow(long[] words, int offset) {
+    int x = 0;
+    while (x < width) {
+      long w = words[offset + (x >>> 6)];
+      int end = Math.min(width, (x | 63) + 1);
+      for (; x < end; x++) {
+        pixel((int)(w >>> 63));
+        w = w << 1;
+      }
+    }
+  }
+
+  /**
+   * Writes rows of background pixels.
+   *
+   * @param count the number of rows
+   */
+  public void writeBlankRows(int count) {
+    for (long i = (long)count * width; i > 0; i--) {
+      pixel(0);
+    }
+  }
+
+  /**
+   * Writes everything that comes after the pixels of the image.
+   */
+  public void finishImage() {
+    if (prefix >= 0) {
+      emit(prefix);
+      // the decoder is about to add one more string to its table
+      if ((nextCode == (1 << codeSize)) && (codeSize < MAX_CODE_SIZE)) codeSize++;
+    }
+    emit(END_CODE);
+    if (bitCount > 0) putData((int)bitBuffer);
+    bitBuffer = 0;
+    bitCount = 0;
+    flushBlock();
+    put(0);
+
+    // trailer
+    put(0x3b);
+  }
+
+  /**
+   * Adds one pixel to the LZW stream.
+   */
+  private void pixel(int k) {
+    if (prefix < 0) {
+      prefix = k;
+      return;
+    }
+    int[] children = (k == 0) ? child0 : child1;
+    int c = children[prefix];
+    if (c != 0) {
+      prefix = c;
+      return;
+    }
+    emit(prefix);
+    if (nextCode < TABLE_SIZE) {
+      children[prefix] = nextCode++;
+      if (nextCode > (1 << codeSize)) codeSize++;
+    }
+    else {
+      emit(CLEAR_CODE);
+      clearTable();
+    }
+    prefix = k;
+  }
+
+  private void clearTable() {
+    Arrays.fill(child0, 0);
+    Arrays.fill(child1, 0);
+    nextCode = FIRST_CODE;
+    codeSize = MIN_CODE_SIZE + 1;
+  }
+
+  private void emit(int code) {
+    bitBuffer = bitBuffer | ((long)code << bitCount);
+    bitCount = bitCount + codeSize;
+    while (bitCount >= 8) {
+      putData((int)bitBuffer);
+      bitBuffer = bitBuffer >>> 8;
+      bitCount = bitCount - 8;
+    }
+  }
+
+  private void putData(int b) {
+    block[blockSize++] = (byte)b;
+    if (blockSize == 255) flushBlock();
+  }
+
+  private void flushBlock() {
+    if (blockSize == 0) return;
+    ensure(blockSize + 1);
+    buf[size++] = (byte)blockSize;
+    System.arraycopy(block, 0, buf, size, blockSize);
+    size = size + blockSize;
+    blockSize = 0;
+  }
+
+  private void put(int b) {
+    ensure(1);
+    buf[size++] = (byte)b;
+  }
+
+  private void putShort(int s) {
+    put(s & 0xff);
+    put((s >>> 8) & 0xff);
+  }
+
+  private void ensure(int n) {
+    if (size + n > buf.length) {
+      buf = Arrays.copyOf(buf, Math.max(size + n, 2 * buf.length));
+    }
+  }
+
+}
@@ -0,0 +1,200 @@
+// GlyphBitmap.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.util.Arrays;
+
+/**
+ * A one-bit-per-pixel image of a single character.
+ * <p>
+ * Each row occupies a whole number of longs, and within each long the
+ * leftmost pixel is the most significant bit, so that the bytes of a
+ * row, taken in big-endian order, are already in the packed layout
+ * used by one-bit images.  The backing array only ever grows, so one
+ * GlyphBitmap can be reset and reused for every character of a font.
+ * Rows count down from 0 at the top (max n) of the character, and
+ * columns count from 0 at min m, just as in the GF format.
+ *
+ * @author Richard Blaylock
+ */
+public class GlyphBitmap {
+
+  int width;
+  int height;
+
+  /** number of longs in each row */
+  int wordsPerRow;
+
+  /** the pixels, row by row; 1 bits are black */
+  long[] words;
+
+  /**
+   * Creates an empty bitmap.
+   */
+  public GlyphBitmap() {
+    this(0, 0);
+  }
+
+  /**
+   * Creates an all-white bitmap of the given size.
+   *
+   * @param width the number of columns
+   * @param height the number of rows
+   */
+  public GlyphBitmap(int width, int height) {
+    words = new long[0];
+    reset(width, height);
+  }
+
+  /**
+   * Resizes this bitmap and makes it all white, growing the backing
+   * array only if it is too small.
+   *
+   * @param width the number of columns
+   * @param height the number of rows
+   */
+  public void reset(int width, int height) {
+    if (width < 0) width = 0;
+    if (height < 0) height = 0;
+    this.width = width;
+    this.height = height;
+    wordsPerRow = (width + 63) >>> 6;
+    int size = wordsPerRow * height;
+    if (words.length < size) {
+      words = new long[size];
+    }
+    else {
+      Arrays.fill(words, 0, size, 0L);
+    }
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getWordsPerRow() {
+    return wordsPerRow;
+  }
+
+  /**
+   * The backing array, which may be longer than
+   * getWordsPerRow() * getHeight().
+   */
+  public long[] getWords() {
+    return words;
+  }
+
+  /**
+   * Paints columns from through to - 1 of the given row black.
+   * Parts of the span that fall outside the bitmap are ignored.
+   *
+   * @param row the row to paint
+   * @param from the first column to paint
+   * @param to one more than the last column to paint
+   */
+  public void fillSpan(int row, int from, int to) {
+    if ((row < 0) || (row >= height)) return;
+    if (from < 0) from = 0;
+    if (to > width) to = width;
+    if (from >= to) return;
+
+    int base = row * wordsPerRow;
+    int first = from >>> 6;
+    int last = (to - 1) >>> 6;
+    long firstMask = -1L >>> (from & 63);
+    long lastMask = -1L << (63 - ((to - 1) & 63));
+    if (first == last) {
+      words[base + first] |= firstMask & lastMask;
+    }
+    else {
+      words[base + first] |= firstMask;
+      for (int i = first + 1; i < last; i++) {
+        words[base + i] = -1L;
+      }
+      words[base + last] |= lastMask;
+    }
+  }
+
+  /**
+   * Paints the black pixels of another bitmap onto this one, with its
+   * top left corner at the given column and row.  Parts of it that
+   * fall outside this bitmap are ignored.
+   *
+   * @param source the bitmap to copy
+   * @param column where its column 0 goes
+   * @param row where its row 0 goes
+   */
+  public void draw(GlyphBitmap source, int column, int row) {
+    if (column < 0) {
+      for (int y = 0; y < source.height; y++) {
+        for (int x = 0; x < source.width; x++) {
+          if (source.get(x, y)) fillSpan(row + y, column + x, column + x + 1);
+        }
+      }
+      return;
+    }
+    int shift = column & 63;
+    int first = column >>> 6;
+    long[] from = source.words;
+    for (int y = 0; y < source.height; y++) {
+      if ((row + y < 0) || (row + y >= height)) continue;
+      int base = (row + y) * wordsPerRow;
+      int sourceBase = y * source.wordsPerRow;
+      for (int i = 0; i < source.wordsPerRow; i++) {
+        long word = from[sourceBase + i];
+        if (word == 0) continue;
+        int k = first + i;
+        if (k < wordsPerRow) words[base + k] |= word >>> shift;
+        if ((shift != 0) && (k + 1 < wordsPerRow)) words[base + k + 1] |= word << (64 - shift);
+      }
+    }
+  }
+
+  /**
+   * @return whether the pixel at the given column and row is black
+   */
+  public boolean get(int column, int row) {
+    if ((row < 0) || (row >= height) || (column < 0) || (column >= width)) {
+      return false;
+    }
+    long w = words[row * wordsPerRow + (column >>> 6)];
+    return ((w << (column & 63)) < 0);
+  }
+
+  /**
+   * @return a new bitmap, just big enough, with the same pixels as this one
+   */
+  public GlyphBitmap copy() {
+    GlyphBitmap retVal = new GlyphBitmap(width, height);
+    System.arraycopy(words, 0, retVal.words, 0, wordsPerRow * height);
+    return retVal;
+  }
+
+}
@@ -0,0 +1,81 @@
+// GlyphEvent.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import jdk.jfr.*;
+
+/**
+ * The fields shared by the Flight Recorder events that time the work
+ * done on a single character.  The events are disabled unless a
+ * recording turns them on, and while they are off, beginning and
+ * committing them costs next to nothing.
+ *
+ * @author Richard Blaylock
+ */
+@Category({"GF2GIFs"})
+@StackTrace(false)
+@Enabled(false)
+abstract class GlyphEvent extends Event {
+
+  @Label("Character Code")
+  int code;
+
+  @Label("Min M")
+  int minM;
+
+  @Label("Max M")
+  int maxM;
+
+  @Label("Min N")
+  int minN;
+
+  @Label("Max N")
+  int maxN;
+
+  @Label("Black Pixels")
+  long pixels;
+
+  @Label("Runs")
+  @Description("The number of paint runs, where the step sees them")
+  int runs;
+
+  @Label("Bytes")
+  @Description("The size of the GIF image, where the step has one")
+  @DataAmount
+  int bytes;
+
+  /**
+   * Fills in the character code and bounding box.
+   */
+  void setCharacter(int code, int minM, int maxM, int minN, int maxN) {
+    this.code = code;
+    this.minM = minM;
+    this.maxM = maxM;
+    this.minN = minN;
+    this.maxN = maxN;
+  }
+
+}
@@ -0,0 +1,280 @@
+// GlyphManifest.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+/**
+ * A record of every character converted, written as JSON lines: one
+ * object per GIF file, in the order the files were written, with the
+ * fields<ul>
+ * <li>code: the character code</li>
+ * <li>path: the GIF file</li>
+ * <li>width, height: the size of the image in pixels</li>
+ * <li>left: the column of the reference point, counting from 0 at the
+ * left edge of the image; negative if the image lies to its right</li>
+ * <li>baseline: the number of image rows above the baseline</li>
+ * <li>dx, tfmWidth: the escapement (in pixels times 2<sup>16</sup>)
+ * and width (in units of 2<sup>-20</sup> times the design size) of
+ * the character's char_loc command, or null if there is none</li>
+ * <li>bytes: the size of the GIF file</li>
+ * <li>nanos, allocatedBytes: the time spent and the memory allocated
+ * parsing, painting, encoding and writing the character, or -1 if the
+ * JVM cannot count allocations</li></ul>
+ * <p>
+ * The char_locs come at the end of a GF file, so when the postamble
+ * cannot be read ahead of time the records of a font are held back
+ * until it has been parsed.  Records may come from several threads
+ * at once; each line is written whole.
+ *
+ * @author Richard Blaylock
+ * @see GF2GIFCallback#setManifest
+ */
+public class GlyphManifest implements Closeable {
+
+  /** what counts the bytes each thread allocates, or null if nothing does */
+  static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationCounter();
+
+  Writer out;
+
+  /** reused for each line */
+  StringBuilder line = new StringBuilder(256);
+
+  /** the fonts whose records are still being held back */
+  ArrayList<Font> waiting = new ArrayList<Font>();
+
+  /**
+   * Creates a manifest that writes to the given stream, through a
+   * buffer of its own.
+   */
+  public GlyphManifest(Writer out) {
+    this.out = new BufferedWriter(out, 65536);
+  }
+
+  /**
+   * Creates a manifest in the given file, replacing any that is there.
+   */
+  public GlyphManifest(File file) throws IOException {
+    this(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+  }
+
+  private static com.sun.management.ThreadMXBean allocationCounter() {
+    try {
+      Object threads = ManagementFactory.getThreadMXBean();
+      if (threads instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean)threads;
+        if (t.isThreadAllocatedMemorySupported() && t.isThreadAllocatedMemoryEnabled()) return t;
+      }
+    }
+    catch (LinkageError le) {
+      // no jdk.management module
+    }
+    return null;
+  }
+
+  /**
+   * @return the number of bytes allocated so far by the current
+   * thread, or 0 if the JVM cannot tell
+   */
+  public static long allocatedBytes() {
+    if (ALLOCATIONS == null) return 0;
+    return ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Starts the records of a font.
+   *
+   * @param metrics the font's postamble, or null if it has not been
+   * read, in which case the records wait for the char_locs to be
+   * passed to charLoc and for finish to be called
+   */
+  public Font startFont(GFMetrics metrics) {
+    Font font = new Font();
+    if (metrics != null) {
+      for (int i = 0; i < metrics.getCharLocCount(); i++) {
+        font.charLoc(metrics.getCharacterResidue(i), metrics.getDX(i), metrics.getWidth(i));
+      }
+      font.finished = true;
+    }
+    else {
+      synchronized (this) {
+        waiting.add(font);
+      }
+    }
+    return font;
+  }
+
+  /**
+   * The char_locs and held back records of a single font.
+   */
+  public class Font {
+    int[] dx = new int[256];
+    int[] width = new int[256];
+    boolean[] located = new boolean[256];
+
+    /** whether the char_locs are all known */
+    boolean finished;
+    ArrayList<Record> records = new ArrayList<Record>();
+
+    public void charLoc(int residue, int dx, int width) {
+      synchronized (GlyphManifest.this) {
+        this.dx[residue & 0xff] = dx;
+        this.width[residue & 0xff] = width;
+        located[residue & 0xff] = true;
+      }
+    }
+
+    /**
+     * Records a character whose GIF file has been written.
+     */
+    public void record(int code, String path, int width, int height, int left, int baseline,
+                       int bytes, long nanos, long allocatedBytes) {
+      Record r = new Record();
+      r.code = code;
+      r.path = path;
+      r.width = width;
+      r.height = height;
+      r.left = left;
+      r.baseline = baseline;
+      r.bytes = bytes;
+      r.nanos = nanos;
+      r.allocatedBytes = allocatedBytes;
+      synchronized (GlyphManifest.this) {
+        if (finished) write(this, r);
+        else records.add(r);
+      }
+    }
+
+    /**
+     * Writes the records held back, once the char_locs have all been
+     * passed to charLoc.
+     */
+    public void finish() {
+      synchronized (GlyphManifest.this) {
+        release(this);
+        waiting.remove(this);
+      }
+    }
+  }
+
+  static class Record {
+    int code;
+    String path;
+    int width, height;
+    int left, baseline;
+    int bytes;
+    long nanos;
+    long allocatedBytes;
+  }
+
+  private void release(Font font) {
+    font.finished = true;
+    for (Record r : font.records) {
+      write(font, r);
+    }
+    font.records.clear();
+  }
+
+  private void write(Font font, Record r) {
+    StringBuilder b = line;
+    b.setLength(0);
+    b.append("{\"code\":").append(r.code);
+    b.append(",\"path\":");
+    quote(b, r.path);
+    b.append(",\"width\":").append(r.width);
+    b.append(",\"height\":").append(r.height);
+    b.append(",\"left\":").append(r.left);
+    b.append(",\"baseline\":").append(r.baseline);
+    int residue = r.code & 0xff;
+    if (font.located[residue]) {
+      b.append(",\"dx\":").append(font.dx[residue]);
+      b.append(",\"tfmWidth\":").append(font.width[residue]);
+    }
+    else {
+      b.append(",\"dx\":null,\"tfmWidth\":null");
+    }
+    b.append(",\"bytes\":").append(r.bytes);
+    b.append(",\"nanos\":").append(r.nanos);
+    b.append(",\"allocatedBytes\":").append((ALLOCATIONS != null) ? r.allocatedBytes : -1);
+    b.append("}\n");
+    try {
+      out.append(b);
+    }
+    catch (IOException ioe) {
+      ioe.printStackTrace();
+    }
+  }
+
+  /**
+   * Appends s as a JSON string.
+   */
+  static void quote(StringBuilder b, String s) {
+    b.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if ((c == '"') || (c == '\\')) b.append('\\').append(c);
+      else if (c < 0x20) {
+        b.append("\\u00");
+        b.append(Character.forDigit(c >> 4, 16));
+        b.append(Character.forDigit(c & 0xf, 16));
+      }
+      else b.append(c);
+    }
+    b.append('"');
+  }
+
+  /**
+   * Writes out any records still held back, as they are, and closes
+   * the stream.
+   */
+  public synchronized void close() throws IOException {
+    for (Font font : waiting) {
+      release(font);
+    }
+    waiting.clear();
+    out.close();
+  }
+
+  /**
+   * Closes the manifest when the JVM exits, so that a run ended by
+   * System.exit loses none of it.
+   */
+  public void closeOnExit() {
+    Runtime.getRuntime().addShutdownHook(new Thread("manifest") {
+        public void run() {
+          try {
+            close();
+          }
+          catch (IOException ioe) {
+            ioe.printStackTrace();
+          }
+        }
+      });
+  }
+
+}
@@ -0,0 +1,307 @@
+// MetricsRegistry.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small set of counters and latency histograms that can be written
+ * out in the Prometheus text exposition format, to a file or to
+ * anyone who asks a local HTTP port for /metrics.
+ * <p>
+ * Metrics are created once, by name (and at most one label), and
+ * kept in static fields by the classes that update them; updating
+ * one is a LongAdder increment, so threads do not contend.  The
+ * conversions record theirs in DEFAULT.
+ *
+ * @author Richard Blaylock
+ * @see ConversionMetrics
+ */
+public class MetricsRegistry {
+
+  /** the registry that GFParser and the converters record to */
+  public static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+  /** the upper bounds, in seconds, of the buckets of every histogram */
+  static final double[] LATENCY_BUCKETS = {
+    0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005,
+    0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+    0.1, 0.25, 0.5, 1, 2.5, 5, 10
+  };
+
+  /**
+   * Metrics of the same name, one for each value of their label.
+   */
+  static class Family {
+    String name;
+    String help;
+    String type;
+    String labelName;
+    LinkedHashMap<String, Object> children = new LinkedHashMap<String, Object>();
+
+    Family(String name, String help, String type, String labelName) {
+      this.name = name;
+      this.help = help;
+      this.type = type;
+      this.labelName = labelName;
+    }
+  }
+
+  /**
+   * A count that only goes up.
+   */
+  public static final class Counter {
+    final LongAdder value = new LongAdder();
+
+    public void inc() {
+      value.increment();
+    }
+
+    public void add(long n) {
+      value.add(n);
+    }
+
+    public long get() {
+      return value.sum();
+    }
+  }
+
+  /**
+   * A distribution of durations, in the buckets of LATENCY_BUCKETS.
+   */
+  public static final class Histogram {
+    static final long[] BOUNDS = new long[LATENCY_BUCKETS.length];
+    static {
+      for (int i = 0; i < BOUNDS.length; i++) {
+        BOUNDS[i] = Math.round(LATENCY_BUCKETS[i] * 1e9);
+      }
+    }
+
+    /** the number of observations in each bucket alone, the last for +Inf */
+    final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    final LongAdder sumNanos = new LongAdder();
+
+    Histogram() {
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    /**
+     * @param nanos a duration, in nanoseconds
+     */
+    public void observe(long nanos) {
+      int i = Arrays.binarySearch(BOUNDS, nanos);
+      if (i < 0) i = -i - 1;
+      buckets[i].increment();
+      sumNanos.add(nanos);
+    }
+  }
+
+  LinkedHashMap<String, Family> families = new LinkedHashMap<String, Family>();
+
+  /**
+   * @return the counter of the given name, which is created the first
+   * time it is asked for
+   */
+  public Counter counter(String name, String help) {
+    return counter(name, help, null, null);
+  }
+
+  /**
+   * @return the counter of the given name and label value, which is
+   * created the first time it is asked for
+   */
+  public Counter counter(String name, String help, String labelName, String labelValue) {
+    return (Counter)child(name, help, "counter", labelName, labelValue);
+  }
+
+  /**
+   * @return the histogram of the given name and label value, which is
+   * created the first time it is asked for
+   */
+  public Histogram histogram(String name, String help, String labelName, String labelValue) {
+    return (Histogram)child(name, help, "histogram", labelName, labelValue);
+  }
+
+  private synchronized Object child(String name, String help, String type,
+                                    String labelName, String labelValue) {
+    Family f = families.get(name);
+    if (f == null) {
+      f = new Family(name, help, type, labelName);
+      families.put(name, f);
+    }
+    else if (!f.type.equals(type)) {
+      throw new IllegalArgumentException(name + " is already a " + f.type);
+    }
+    String key = (labelValue == null) ? "" : labelValue;
+    Object child = f.children.get(key);
+    if (child == null) {
+      child = type.equals("counter") ? (Object)new Counter() : (Object)new Histogram();
+      f.children.put(key, child);
+    }
+    return child;
+  }
+
+  /**
+   * Writes the current value of every metric in the Prometheus text
+   * exposition format.
+   */
+  public synchronized void write(Writer w) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (Family f : families.values()) {
+      sb.append("# HELP ").append(f.name).append(' ').append(f.help).append('\n');
+      sb.append("# TYPE ").append(f.name).append(' ').append(f.type).append('\n');
+      for (Map.Entry<String, Object> e : f.children.entrySet()) {
+        String label = (f.labelName == null) ? ""
+            : f.labelName + "=\"" + e.getKey() + "\"";
+        if (e.getValue() instanceof Counter) {
+          sample(sb, f.name, label, null, ((Counter)e.getValue()).get());
+        }
+        else {
+          writeHistogram(sb, f.name, label, (Histogram)e.getValue());
+        }
+      }
+    }
+    w.write(sb.toString());
+    w.flush();
+  }
+
+  private static void writeHistogram(StringBuilder sb, String name, String label, Histogram h) {
+    long count = 0;
+    for (int i = 0; i < h.buckets.length; i++) {
+      count = count + h.buckets[i].sum();
+      String le = (i < LATENCY_BUCKETS.length) ? Double.toString(LATENCY_BUCKETS[i]) : "+Inf";
+      sample(sb, name + "_bucket", label, "le=\"" + le + "\"", count);
+    }
+    sb.append(name).append("_sum");
+    if (label.length() > 0) sb.append('{').append(label).append('}');
+    sb.append(' ').append(h.sumNanos.sum() / 1e9).append('\n');
+    sample(sb, name + "_count", label, null, count);
+  }
+
+  private static void sample(StringBuilder sb, String name, String label, String extra, long value) {
+    sb.append(name);
+    if ((label.length() > 0) || (extra != null)) {
+      sb.append('{').append(label);
+      if (extra != null) {
+        if (label.length() > 0) sb.append(',');
+        sb.append(extra);
+      }
+      sb.append('}');
+    }
+    sb.append(' ').append(value).append('\n');
+  }
+
+  /**
+   * Writes the current values to the given file, replacing it in one
+   * step, so that a collector reading it never sees half a snapshot.
+   */
+  public void dump(File file) throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    File temp = File.createTempFile(file.getName(), ".tmp", dir);
+    try {
+      Writer w = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8);
+      try {
+        write(w);
+      }
+      finally {
+        w.close();
+      }
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally {
+      temp.delete();
+    }
+  }
+
+  /**
+   * Writes the values to the given file when the program ends, however
+   * it ends.
+   */
+  public void dumpOnExit(final File file) {
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+        public void run() {
+          try {
+            dump(file);
+          }
+          catch (IOException ioe) {
+            System.err.println("could not write metrics to " + file + ": " + ioe.getMessage());
+          }
+        }
+      });
+  }
+
+  /**
+   * Serves the current values at http://localhost:port/metrics, from a
+   * daemon thread, until the program ends.
+   *
+   * @return the server, which can be stopped
+   */
+  public HttpServer serve(int port) throws IOException {
+    HttpServer server = HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/metrics", new HttpHandler() {
+        public void handle(HttpExchange exchange) throws IOException {
+          StringWriter sw = new StringWriter();
+          write(sw);
+          byte[] body = sw.toString().getBytes(StandardCharsets.UTF_8);
+          exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+          exchange.sendResponseHeaders(200, body.length);
+          OutputStream os = exchange.getResponseBody();
+          os.write(body);
+          os.close();
+        }
+      });
+    server.setExecutor(null);
+    // the server's dispatcher thread is a daemon only if the thread
+    // that starts it is one
+    final HttpServer started = server;
+    Thread starter = new Thread("metrics") {
+        public void run() {
+          started.start();
+        }
+      };
+    starter.setDaemon(true);
+    starter.start();
+    try {
+      starter.join();
+    }
+    catch (InterruptedException ie) {
+      ie.printStackTrace();
+    }
+    return server;
+  }
+
+}
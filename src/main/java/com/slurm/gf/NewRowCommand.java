@@ -42,4 +42,9 @@ public class NewRowCommand extends Command {
   public int getOffset() {
     return offset;
   }
+
+  public void accept(GFParserCallback c) {
+    c.handleNewRowCommand(this);
+  }
+
 }
@@ -35,4 +35,8 @@ public class NoOpCommand extends Command {
     super(l, o);
   }
 
+  public void accept(GFParserCallback c) {
+    c.handleNoOpCommand(this);
+  }
+
 }
@@ -43,4 +43,9 @@ public class PaintCommand extends Command {
   public int getNumPixels() {
     return d;
   }
+
+  public void accept(GFParserCallback c) {
+    c.handlePaintCommand(this);
+  }
+
 }
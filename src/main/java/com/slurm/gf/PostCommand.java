@@ -91,4 +91,8 @@ public class PostCommand extends Command {
     return max_n;
   }
 
+  public void accept(GFParserCallback c) {
+    c.handlePostCommand(this);
+  }
+
 }
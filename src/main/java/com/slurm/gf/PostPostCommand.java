@@ -41,4 +41,9 @@ public class PostPostCommand extends Command {
   public int getPostLoc() {
     return postLoc;
   }
+
+  public void accept(GFParserCallback c) {
+    c.handlePostPostCommand(this);
+  }
+
 }
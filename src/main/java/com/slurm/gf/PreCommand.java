@@ -47,4 +47,9 @@ public class PreCommand extends Command {
   public int[] getCommentBytes() {
     return commentBytes;
   }
+
+  public void accept(GFParserCallback c) {
+    c.handlePreCommand(this);
+  }
+
 }
@@ -43,4 +43,8 @@ public class SkipCommand extends Command {
     return rows;
   }
 
+  public void accept(GFParserCallback c) {
+    c.handleSkipCommand(this);
+  }
+
 }
@@ -0,0 +1,198 @@
+// SkylinePacker.java
+//
+// Copyright (C) 2000 by Richard Blaylock <blaylock@slurm.com>.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE
+// FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+// DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+// OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+// OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+// SUCH DAMAGE.
+
+package com.slurm.gf;
+
+/**
+ * Places rectangles in a fixed-size area by keeping track of its
+ * skyline: the lowest free row of each stretch of columns, left to
+ * right, with row 0 at the top.  Each rectangle goes where its bottom
+ * edge will be highest, and among those places where it fits the
+ * stretch most closely.  This wastes a little space under overhangs,
+ * but placing a rectangle only costs a pass over the skyline, which
+ * has at most one stretch per column, so tens of thousands of
+ * characters can be packed quickly.  The packing is best when the
+ * rectangles come tallest first.
+ *
+ * @author Richard Blaylock
+ * @see GF2GIFAtlas
+ */
+public class SkylinePacker {
+
+  int width;
+  int height;
+
+  // the stretches of the skyline: stretch i covers columns x[i]
+  // through x[i] + w[i] - 1, whose lowest free row is y[i]
+  int[] x;
+  int[] y;
+  int[] w;
+  int count;
+
+  /** where the last rectangle went */
+  int lastX, lastY;
+
+  /**
+   * Creates an empty area of the given size.
+   */
+  public SkylinePacker(int width, int height) {
+    this.width = width;
+    this.height = height;
+    x = new int[16];
+    y = new int[16];
+    w = new int[16];
+    w[0] = width;
+    count = 1;
+  }
+
+  /**
+   * Finds room for a rectangle and fills it.
+   *
+   * @param rw the width of the rectangle
+   * @param rh the height of the rectangle
+   * @return whether there was room, in which case getX and getY give
+   * its top left corner
+   */
+  public boolean insert(int rw, int rh) {
+    if ((rw <= 0) || (rh <= 0)) {
+      lastX = 0;
+      lastY = 0;
+      return true;
+    }
+    int best = -1;
+    int bestBottom = Integer.MAX_VALUE;
+    int bestWidth = Integer.MAX_VALUE;
+    int bestTop = 0;
+    for (int i = 0; i < count; i++) {
+      int top = fit(i, rw, rh);
+      if (top < 0) continue;
+      int bottom = top + rh;
+      if ((bottom < bestBottom) || ((bottom == bestBottom) && (w[i] < bestWidth))) {
+        best = i;
+        bestBottom = bottom;
+        bestWidth = w[i];
+        bestTop = top;
+      }
+    }
+    if (best < 0) return false;
+    lastX = x[best];
+    lastY = bestTop;
+    place(best, rw, bestBottom);
+    return true;
+  }
+
+  /**
+   * @return the top row at which a rectangle whose left edge is at
+   * the start of stretch i would rest, or -1 if it does not fit there
+   */
+  private int fit(int i, int rw, int rh) {
+    if (x[i] + rw > width) return -1;
+    int top = 0;
+    int left = rw;
+    for (int j = i; left > 0; j++) {
+      if (y[j] > top) top = y[j];
+      if (top + rh > height) return -1;
+      left = left - w[j];
+    }
+    return top;
+  }
+
+  /**
+   * Raises the skyline over a rectangle put at the start of stretch i.
+   */
+  private void place(int i, int rw, int bottom) {
+    if (count == x.length) {
+      x = java.util.Arrays.copyOf(x, 2 * count);
+      y = java.util.Arrays.copyOf(y, 2 * count);
+      w = java.util.Arrays.copyOf(w, 2 * count);
+    }
+    System.arraycopy(x, i, x, i + 1, count - i);
+    System.arraycopy(y, i, y, i + 1, count - i);
+    System.arraycopy(w, i, w, i + 1, count - i);
+    count++;
+    w[i] = rw;
+    y[i] = bottom;
+
+    // cut the stretches now under the rectangle
+    int end = x[i] + rw;
+    int j = i + 1;
+    while ((j < count) && (x[j] < end)) {
+      int over = end - x[j];
+      if (over < w[j]) {
+        x[j] = end;
+        w[j] = w[j] - over;
+        break;
+      }
+      j++;
+    }
+    remove(i + 1, j);
+
+    // join neighbours at the same height
+    int k = (i > 0) ? i - 1 : i;
+    while (k < count - 1) {
+      if (y[k] == y[k + 1]) {
+        w[k] = w[k] + w[k + 1];
+        remove(k + 1, k + 2);
+      }
+      else if (k > i) break;
+      else k++;
+    }
+  }
+
+  /**
+   * Removes stretches from through to - 1.
+   */
+  private void remove(int from, int to) {
+    if (to <= from) return;
+    System.arraycopy(x, to, x, from, count - to);
+    System.arraycopy(y, to, y, from, count - to);
+    System.arraycopy(w, to, w, from, count - to);
+    count = count - (to - from);
+  }
+
+  /**
+   * @return the left edge of the rectangle last inserted
+   */
+  public int getX() {
+    return lastX;
+  }
+
+  /**
+   * @return the top edge of the rectangle last inserted
+   */
+  public int getY() {
+    return lastY;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+}
@@ -37,4 +37,8 @@ public class UndefinedCommand extends Command {
     super(l, o);
   }
 
+  public void accept(GFParserCallback c) {
+    c.handleUndefinedCommand(this);
+  }
+
 }
@@ -47,4 +47,9 @@ public class XXXCommand extends Command {
   public int[] getXBytes() {
     return xbytes;
   }
+
+  public void accept(GFParserCallback c) {
+    c.handleXXXCommand(this);
+  }
+
 }
@@ -41,4 +41,9 @@ public class YYYCommand extends Command {
   public int[] getYBytes() {
     return ybytes;
   }
+
+  public void accept(GFParserCallback c) {
+    c.handleYYYCommand(this);
+  }
+
 }